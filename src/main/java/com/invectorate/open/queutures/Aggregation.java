@@ -0,0 +1,145 @@
+package com.invectorate.open.queutures;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.BiFunction;
+import java.util.function.BinaryOperator;
+import java.util.function.Supplier;
+
+import com.google.common.collect.Lists;
+
+/**
+ * An aggregate of the results of a {@link Queuture}, computed incrementally as the results arrive.
+ * <p>
+ * The results are read by several drainers running on an {@link Executor}. Each drainer folds the results it reads
+ * into its own accumulator, which no other thread writes, so drainers never contend with one another. The
+ * accumulators are combined when a {@linkplain #snapshot() snapshot} is requested and when the source has no more
+ * results, at which point the {@linkplain #result() result} is completed.
+ * <p>
+ * Because accumulators are read by other threads while they are being updated, the accumulator and combiner functions
+ * must treat their arguments as immutable, returning new values instead of modifying them.
+ * 
+ * @see Queutures#reduce(Queuture, Executor, int, Object, BiFunction, BinaryOperator)
+ * 
+ * @author Noah Fontes <nfontes@invectorate.com>
+ * 
+ * @param <R>
+ *            The type of the aggregate.
+ */
+public final class Aggregation<R> {
+
+    private final Queuture<?> source;
+    private final Supplier<R> identity;
+    private final BinaryOperator<R> combiner;
+
+    private final List<AtomicReference<R>> accumulators;
+    private final AtomicInteger running;
+    private final CompletableFuture<R> result = new CompletableFuture<R>() {
+
+        @Override
+        public boolean cancel(final boolean mayInterruptIfRunning) {
+            boolean cancelled = super.cancel(mayInterruptIfRunning);
+            if (cancelled)
+                Aggregation.this.source.cancel(true);
+            return cancelled;
+        }
+
+    };
+
+    private Aggregation(final Queuture<?> source, final int parallelism, final Supplier<R> identity, final BinaryOperator<R> combiner) {
+        this.source = source;
+        this.identity = identity;
+        this.combiner = combiner;
+        this.accumulators = Lists.newArrayListWithCapacity(parallelism);
+        for (int i = 0; i < parallelism; i++)
+            this.accumulators.add(new AtomicReference<R>(identity.get()));
+        this.running = new AtomicInteger(parallelism);
+    }
+
+    static <V, R> Aggregation<R> start(final Queuture<V> source, final Executor executor, final int parallelism, final Supplier<R> identity, final BiFunction<R, ? super V, R> accumulator, final BinaryOperator<R> combiner) {
+        Aggregation<R> aggregation = new Aggregation<R>(source, parallelism, identity, combiner);
+        for (AtomicReference<R> cell : aggregation.accumulators) {
+            try {
+                executor.execute(aggregation.new Drainer<V>(cell, accumulator));
+            } catch (RejectedExecutionException e) {
+                aggregation.fail(e);
+                throw e;
+            }
+        }
+        return aggregation;
+    }
+
+    /**
+     * Returns the aggregate of the results read so far. Results that drainers are folding in at the time of the call may
+     * or may not be included.
+     */
+    public R snapshot() {
+        R snapshot = this.identity.get();
+        for (AtomicReference<R> cell : this.accumulators)
+            snapshot = this.combiner.apply(snapshot, cell.get());
+        return snapshot;
+    }
+
+    /**
+     * Returns a future that is completed with the aggregate of all results once the source has no more results.
+     * <p>
+     * If the source fails or is cancelled, or the accumulator or combiner throws an exception, the future is completed
+     * exceptionally. Cancelling the future cancels the source.
+     */
+    public CompletableFuture<R> result() {
+        return this.result;
+    }
+
+    private void fail(final Throwable t) {
+        if (this.result.completeExceptionally(t))
+            this.source.cancel(true);
+    }
+
+    private final class Drainer<V> implements Runnable {
+
+        private final AtomicReference<R> cell;
+        private final BiFunction<R, ? super V, R> accumulator;
+
+        Drainer(final AtomicReference<R> cell, final BiFunction<R, ? super V, R> accumulator) {
+            this.cell = cell;
+            this.accumulator = accumulator;
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public void run() {
+            Queuture<V> source = (Queuture<V>) Aggregation.this.source;
+            try {
+                R value = this.cell.get();
+                V next;
+                while (!Aggregation.this.result.isDone() && (next = source.next()) != null) {
+                    value = this.accumulator.apply(value, next);
+                    /* Only this thread writes the cell, so it just needs to publish the value to snapshots. */
+                    this.cell.lazySet(value);
+                }
+            } catch (ExecutionException e) {
+                Aggregation.this.fail(e.getCause());
+            } catch (InterruptedException e) {
+                Aggregation.this.fail(e);
+                Thread.currentThread().interrupt();
+            } catch (RuntimeException | Error e) {
+                Aggregation.this.fail(e);
+            } finally {
+                if (Aggregation.this.running.decrementAndGet() == 0 && !Aggregation.this.result.isDone()) {
+                    try {
+                        Aggregation.this.result.complete(Aggregation.this.snapshot());
+                    } catch (RuntimeException | Error e) {
+                        Aggregation.this.fail(e);
+                    }
+                }
+            }
+        }
+
+    }
+
+}
@@ -0,0 +1,44 @@
+package com.invectorate.open.queutures;
+
+import java.util.concurrent.BlockingQueue;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Threshold;
+
+/**
+ * A Flight Recorder event spanning a call to {@link QueutureBox#put(Object)} that waits for space in a full queue.
+ * 
+ * @author Noah Fontes <nfontes@invectorate.com>
+ */
+@Name("com.invectorate.open.queutures.BoxPut")
+@Label("Queuture Box Put")
+@Category("Queutures")
+@Description("A producer waiting for space to put a result into a queuture")
+@Threshold("10 ms")
+final class BoxPutEvent extends Event {
+
+    @Label("Task Class")
+    Class<?> taskClass;
+
+    @Label("Queue Class")
+    Class<?> queueClass;
+
+    @Label("Remaining Capacity")
+    @Description("The remaining capacity of the queue when the producer stopped waiting")
+    int remainingCapacity;
+
+    void finish(final QueutureTask<?> task, final BlockingQueue<?> queue) {
+        this.end();
+        if (this.shouldCommit()) {
+            this.taskClass = task.getClass();
+            this.queueClass = queue.getClass();
+            this.remainingCapacity = queue.remainingCapacity();
+            this.commit();
+        }
+    }
+
+}
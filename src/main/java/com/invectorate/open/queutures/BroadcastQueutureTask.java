@@ -0,0 +1,543 @@
+package com.invectorate.open.queutures;
+
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+import com.google.common.base.Preconditions;
+
+/**
+ * A computation whose results are delivered to every subscriber, rather than shared among consumers.
+ * <p>
+ * A {@link QueutureTask} hands each result to exactly one consumer. A {@code BroadcastQueutureTask} instead stores each
+ * result once in a ring buffer and gives every subscriber its own cursor into it, so that several independent sinks can
+ * each read the entire output of one computation. Each subscriber is a {@link Queuture} in its own right: it may itself
+ * be read by several threads, which then share that subscriber's results among themselves.
+ * <p>
+ * When the buffer is full, the behavior of the producer depends on the {@link OverrunPolicy}: it either waits for the
+ * slowest subscriber to catch up, or overwrites the oldest results, causing subscribers that have fallen too far behind
+ * to skip ahead.
+ * <p>
+ * Subscribers created by {@link #subscribe()} only see results published after they subscribe, so such subscriptions
+ * should normally be made before the task is run. Subscribers created by {@link #subscribe(boolean)} may instead replay
+ * the results still held in the buffer.
+ * 
+ * @author Noah Fontes <nfontes@invectorate.com>
+ * 
+ * @param <V>
+ *            The type of object being generated by the computation.
+ */
+public class BroadcastQueutureTask<V> implements Runnable {
+
+    /**
+     * What the producer of a {@link BroadcastQueutureTask} does when the slowest subscriber is a full buffer behind.
+     */
+    public static enum OverrunPolicy {
+
+        /**
+         * Wait until every subscriber has read the oldest result in the buffer. No subscriber ever misses a result.
+         */
+        BLOCK,
+
+        /**
+         * Overwrite the oldest result in the buffer. Subscribers that had not yet read it skip ahead to the oldest
+         * result still available; see {@link BroadcastQueutureTask.Subscription#getSkippedCount()}.
+         */
+        SKIP;
+
+    }
+
+    /** State value representing that task is ready to run */
+    private static final int READY = 0;
+    /** State value representing that task is running */
+    private static final int RUNNING = 1;
+    /** State value representing that task ran */
+    private static final int RAN = 2;
+    /** State value representing that task was cancelled */
+    private static final int CANCELLED = 4;
+    /** State value representing that task failed, and its exception is being recorded */
+    private static final int FAILING = 8;
+
+    private final Informable<QueutureBox<V>> informable;
+    private final OverrunPolicy policy;
+
+    private final AtomicReferenceArray<V> buffer;
+    private final int capacity;
+    private final int mask;
+
+    /** One more than the highest sequence number the producer has started to write. */
+    private volatile long claimed = 0L;
+    /** The number of results that are visible to subscribers. */
+    private volatile long published = 0L;
+
+    private final List<Subscription> subscriptions = new CopyOnWriteArrayList<Subscription>();
+
+    private final AtomicInteger state = new AtomicInteger(BroadcastQueutureTask.READY);
+    private volatile Throwable exception;
+    private volatile Thread runner;
+
+    /** Serializes producers, in case the informable hands the box to more than one thread. */
+    private final ReentrantLock putLock = new ReentrantLock();
+
+    /** Guards waiting on the conditions below; never held on the fast path. */
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition notFull = this.lock.newCondition();
+    private final Condition notEmpty = this.lock.newCondition();
+    private volatile boolean producerWaiting = false;
+    private final AtomicInteger consumersWaiting = new AtomicInteger();
+
+    /**
+     * Create a new {@code BroadcastQueutureTask} that will execute the given {@link Informable} as its computation,
+     * blocking the producer when the slowest subscriber falls behind.
+     * 
+     * @param informable
+     *            The computation to execute.
+     * @param capacity
+     *            The number of results the buffer can hold; rounded up to a power of two.
+     */
+    public BroadcastQueutureTask(final Informable<QueutureBox<V>> informable, final int capacity) {
+        this(informable, capacity, OverrunPolicy.BLOCK);
+    }
+
+    /**
+     * Create a new {@code BroadcastQueutureTask} that will execute the given {@link Informable} as its computation.
+     * 
+     * @param informable
+     *            The computation to execute.
+     * @param capacity
+     *            The number of results the buffer can hold; rounded up to a power of two.
+     * @param policy
+     *            What to do when the slowest subscriber falls behind.
+     */
+    public BroadcastQueutureTask(final Informable<QueutureBox<V>> informable, final int capacity, final OverrunPolicy policy) {
+        Preconditions.checkNotNull(informable, "informable must be specified");
+        Preconditions.checkArgument(capacity > 0 && capacity <= 1 << 30, "capacity must be positive and at most 2^30");
+        Preconditions.checkNotNull(policy, "policy must be specified");
+
+        this.informable = informable;
+        this.policy = policy;
+        int size = 1;
+        while (size < capacity)
+            size <<= 1;
+        this.capacity = size;
+        this.mask = this.capacity - 1;
+        this.buffer = new AtomicReferenceArray<V>(this.capacity);
+    }
+
+    /**
+     * Create a new subscriber that will receive every result published from now on.
+     * 
+     * @return A {@link Queuture} for the new subscriber. Cancelling it unsubscribes, without affecting the computation or
+     *         any other subscriber.
+     */
+    public Subscription subscribe() {
+        return this.register(false);
+    }
+
+    /**
+     * Create a new subscriber that will first receive every result still held in the buffer, oldest first, and then
+     * every result published from now on.
+     * <p>
+     * Results that have already been overwritten are not replayed, so a subscriber that joins after more than
+     * {@code capacity} results have been published receives only the most recent {@code capacity} of them before
+     * following the live output. Subscribing after the computation is done replays the results still held and then
+     * reports the end of the computation as usual.
+     * 
+     * @param replay
+     *            Whether to replay results already published; if {@code false}, this method is equivalent to
+     *            {@link #subscribe()}.
+     * 
+     * @return A {@link Queuture} for the new subscriber. Cancelling it unsubscribes, without affecting the computation or
+     *         any other subscriber.
+     */
+    public Subscription subscribe(final boolean replay) {
+        return this.register(replay);
+    }
+
+    /**
+     * Registers a new subscriber, starting either at the oldest result still held or at the next result to be published.
+     * <p>
+     * The producer must not overwrite the result at our cursor before it can see the cursor. It can't while we hold the
+     * put lock, nor while it is parked waiting for space, since it will check the cursors again once it wakes up. It
+     * holds the put lock while it waits, so we can't simply wait for the lock ourselves.
+     */
+    private Subscription register(final boolean replay) {
+        for (;;) {
+            if (this.putLock.tryLock()) {
+                try {
+                    return this.subscribeAt(replay);
+                } finally {
+                    this.putLock.unlock();
+                }
+            }
+
+            this.lock.lock();
+            try {
+                if (this.producerWaiting)
+                    return this.subscribeAt(replay);
+            } finally {
+                this.lock.unlock();
+            }
+
+            Thread.yield();
+        }
+    }
+
+    private Subscription subscribeAt(final boolean replay) {
+        long published = this.published;
+        Subscription subscription = new Subscription(replay ? Math.max(0L, published - this.capacity) : published);
+        if (!this.isFinished())
+            this.subscriptions.add(subscription);
+        return subscription;
+    }
+
+    /**
+     * @see Queuture#isDone()
+     */
+    public boolean isDone() {
+        return (this.state.get() & (BroadcastQueutureTask.RAN | BroadcastQueutureTask.CANCELLED)) != 0 && this.runner == null;
+    }
+
+    /**
+     * @see Queuture#isCancelled()
+     */
+    public boolean isCancelled() {
+        return this.state.get() == BroadcastQueutureTask.CANCELLED;
+    }
+
+    /**
+     * Cancels the computation. All subscribers will subsequently throw {@link CancellationException} from
+     * {@link Queuture#next()}.
+     * 
+     * @see Queuture#cancel(boolean)
+     */
+    public boolean cancel(final boolean mayInterruptIfRunning) {
+        for (;;) {
+            int s = this.state.get();
+            if (s == BroadcastQueutureTask.RAN || s == BroadcastQueutureTask.CANCELLED || s == BroadcastQueutureTask.FAILING)
+                return false;
+            if (this.state.compareAndSet(s, BroadcastQueutureTask.CANCELLED))
+                break;
+        }
+        if (mayInterruptIfRunning) {
+            Thread r = this.runner;
+            if (r != null)
+                r.interrupt();
+        }
+        this.wakeAll();
+        this.done();
+        return true;
+    }
+
+    @Override
+    public void run() {
+        if (!this.state.compareAndSet(BroadcastQueutureTask.READY, BroadcastQueutureTask.RUNNING))
+            return;
+
+        this.runner = Thread.currentThread();
+        try {
+            this.informable.inform(new BoxImpl());
+            if (this.state.compareAndSet(BroadcastQueutureTask.RUNNING, BroadcastQueutureTask.RAN)) {
+                this.runner = null;
+                this.wakeAll();
+                this.done();
+            }
+        } catch (Throwable t) {
+            this.setException(t);
+        } finally {
+            this.runner = null;
+        }
+    }
+
+    /**
+     * Callback method invoked when this task transitions to a done state (whether normally or via cancellation).
+     * 
+     * @see QueutureTask#done()
+     */
+    protected void done() {}
+
+    /**
+     * Causes all subscribers to report an {@link ExecutionException} with the given {@link Throwable} as its cause,
+     * unless the computation has already completed or has been cancelled.
+     * 
+     * @param t
+     *            The cause of failure.
+     */
+    protected void setException(final Throwable t) {
+        /* Subscribers that see the computation finished must also see why, so record the exception first. */
+        if (!this.state.compareAndSet(BroadcastQueutureTask.RUNNING, BroadcastQueutureTask.FAILING))
+            return;
+        this.exception = t;
+        this.state.set(BroadcastQueutureTask.RAN);
+        this.runner = null;
+        this.wakeAll();
+        this.done();
+    }
+
+    /**
+     * Whether the computation has finished or been cancelled, even if the runner has yet to return.
+     */
+    private boolean isFinished() {
+        return (this.state.get() & (BroadcastQueutureTask.RAN | BroadcastQueutureTask.CANCELLED)) != 0;
+    }
+
+    private boolean isRunning() {
+        return this.state.get() == BroadcastQueutureTask.RUNNING;
+    }
+
+    private long slowestCursor(final long otherwise) {
+        long min = otherwise;
+        for (Subscription subscription : this.subscriptions)
+            min = Math.min(min, subscription.cursor.get());
+        return min;
+    }
+
+    private void wakeAll() {
+        this.lock.lock();
+        try {
+            this.notFull.signalAll();
+            this.notEmpty.signalAll();
+        } finally {
+            this.lock.unlock();
+        }
+    }
+
+    private void wakeProducer() {
+        if (this.producerWaiting) {
+            this.lock.lock();
+            try {
+                this.notFull.signalAll();
+            } finally {
+                this.lock.unlock();
+            }
+        }
+    }
+
+    private void wakeConsumers() {
+        if (this.consumersWaiting.get() > 0) {
+            this.lock.lock();
+            try {
+                this.notEmpty.signalAll();
+            } finally {
+                this.lock.unlock();
+            }
+        }
+    }
+
+    /**
+     * Waits until there is room in the buffer for the result with the given sequence number.
+     * 
+     * @return {@code false} if the wait timed out.
+     */
+    private boolean awaitSpace(final long sequence, final long nanosTimeout) throws InterruptedException {
+        if (this.policy == OverrunPolicy.SKIP || sequence - this.slowestCursor(sequence) < this.capacity)
+            return true;
+
+        long nanos = nanosTimeout;
+        this.lock.lockInterruptibly();
+        try {
+            this.producerWaiting = true;
+            while (sequence - this.slowestCursor(sequence) >= this.capacity && this.isRunning()) {
+                if (nanosTimeout < 0) {
+                    this.notFull.await();
+                } else {
+                    if (nanos <= 0)
+                        return false;
+                    nanos = this.notFull.awaitNanos(nanos);
+                }
+            }
+            return true;
+        } finally {
+            this.producerWaiting = false;
+            this.lock.unlock();
+        }
+    }
+
+    private boolean publish(final V object, final long nanosTimeout) throws InterruptedException, TimeoutException {
+        Preconditions.checkNotNull(object, "object must be specified");
+
+        if (!this.isRunning())
+            return false;
+
+        this.putLock.lockInterruptibly();
+        try {
+            long sequence = this.published;
+            if (!this.awaitSpace(sequence, nanosTimeout))
+                throw new TimeoutException();
+            if (!this.isRunning())
+                return false;
+
+            this.claimed = sequence + 1;
+            this.buffer.set((int) sequence & this.mask, object);
+            this.published = sequence + 1;
+        } finally {
+            this.putLock.unlock();
+        }
+
+        this.wakeConsumers();
+        return true;
+    }
+
+    /**
+     * A single subscriber to a {@link BroadcastQueutureTask}.
+     */
+    public final class Subscription implements Queuture<V> {
+
+        /** The sequence number of the next result this subscriber will read. */
+        private final AtomicLong cursor;
+        private final AtomicLong skipped = new AtomicLong();
+        private volatile boolean unsubscribed = false;
+
+        Subscription(final long cursor) {
+            this.cursor = new AtomicLong(cursor);
+        }
+
+        /**
+         * Returns the number of results this subscriber missed because the producer overwrote them before they were read.
+         * Always zero under {@link OverrunPolicy#BLOCK}.
+         */
+        public long getSkippedCount() {
+            return this.skipped.get();
+        }
+
+        /**
+         * Unsubscribes from the computation. The computation itself is not affected.
+         */
+        @Override
+        public boolean cancel(final boolean mayInterruptIfRunning) {
+            if (this.unsubscribed || BroadcastQueutureTask.this.isDone())
+                return false;
+            this.unsubscribed = true;
+            BroadcastQueutureTask.this.subscriptions.remove(this);
+            BroadcastQueutureTask.this.wakeAll();
+            return true;
+        }
+
+        @Override
+        public boolean isCancelled() {
+            return this.unsubscribed || BroadcastQueutureTask.this.isCancelled();
+        }
+
+        @Override
+        public boolean isDone() {
+            return this.unsubscribed || BroadcastQueutureTask.this.isDone();
+        }
+
+        @Override
+        public V next() throws InterruptedException, ExecutionException {
+            try {
+                return this.next(-1L);
+            } catch (TimeoutException te) {
+                throw new AssertionError(te);
+            }
+        }
+
+        @Override
+        public V next(final long timeout, final TimeUnit unit) throws TimeoutException, InterruptedException, ExecutionException {
+            return this.next(Math.max(0L, unit.toNanos(timeout)));
+        }
+
+        private V next(final long nanosTimeout) throws TimeoutException, InterruptedException, ExecutionException {
+            long nanos = nanosTimeout;
+            for (;;) {
+                this.checkState();
+
+                V next = this.poll();
+                if (next != null)
+                    return next;
+                if (BroadcastQueutureTask.this.isFinished()) {
+                    /* Recheck, in case the last result was published just before we looked. */
+                    this.checkState();
+                    return this.poll();
+                }
+
+                BroadcastQueutureTask.this.lock.lockInterruptibly();
+                BroadcastQueutureTask.this.consumersWaiting.incrementAndGet();
+                try {
+                    while (this.cursor.get() >= BroadcastQueutureTask.this.published && !BroadcastQueutureTask.this.isFinished() && !this.unsubscribed) {
+                        if (nanosTimeout < 0) {
+                            BroadcastQueutureTask.this.notEmpty.await();
+                        } else {
+                            if (nanos <= 0)
+                                throw new TimeoutException();
+                            nanos = BroadcastQueutureTask.this.notEmpty.awaitNanos(nanos);
+                        }
+                    }
+                } finally {
+                    BroadcastQueutureTask.this.consumersWaiting.decrementAndGet();
+                    BroadcastQueutureTask.this.lock.unlock();
+                }
+            }
+        }
+
+        private void checkState() throws ExecutionException {
+            if (this.isCancelled())
+                throw new CancellationException();
+            Throwable t = BroadcastQueutureTask.this.exception;
+            if (t != null)
+                throw new ExecutionException(t);
+        }
+
+        /**
+         * Reads the next result without waiting, or returns null if none is available.
+         */
+        private V poll() {
+            for (;;) {
+                long c = this.cursor.get();
+                if (c >= BroadcastQueutureTask.this.published)
+                    return null;
+
+                V next = BroadcastQueutureTask.this.buffer.get((int) c & BroadcastQueutureTask.this.mask);
+
+                /*
+                 * If the producer has since started writing a result a full buffer ahead of us, the slot we read may
+                 * already hold that newer result. Skip ahead to the oldest result that cannot have been overwritten.
+                 */
+                long oldest = BroadcastQueutureTask.this.claimed - BroadcastQueutureTask.this.capacity;
+                if (c < oldest) {
+                    if (this.cursor.compareAndSet(c, oldest))
+                        this.skipped.addAndGet(oldest - c);
+                    continue;
+                }
+
+                if (this.cursor.compareAndSet(c, c + 1)) {
+                    BroadcastQueutureTask.this.wakeProducer();
+                    return next;
+                }
+            }
+        }
+
+    }
+
+    private final class BoxImpl implements QueutureBox<V> {
+
+        @Override
+        public boolean isCancelled() {
+            return BroadcastQueutureTask.this.isCancelled();
+        }
+
+        @Override
+        public boolean put(final V object) throws InterruptedException {
+            try {
+                return BroadcastQueutureTask.this.publish(object, -1L);
+            } catch (TimeoutException te) {
+                throw new AssertionError(te);
+            }
+        }
+
+        @Override
+        public boolean put(final V object, final long timeout, final TimeUnit unit) throws TimeoutException, InterruptedException {
+            return BroadcastQueutureTask.this.publish(object, Math.max(0L, unit.toNanos(timeout)));
+        }
+
+    }
+
+}
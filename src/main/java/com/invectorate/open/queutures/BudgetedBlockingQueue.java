@@ -0,0 +1,189 @@
+package com.invectorate.open.queutures;
+
+import java.util.Collection;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+import com.google.common.base.Preconditions;
+import com.google.common.util.concurrent.ForwardingBlockingQueue;
+
+/**
+ * A {@link BlockingQueue} whose elements draw on a budget shared with other queues.
+ * <p>
+ * Adding an element acquires permits equal to its weight from the shared {@link Semaphore}, waiting if necessary;
+ * removing an element returns them. The semaphore should be fair, so that producers waiting on the budget are served
+ * in order regardless of which queue they are filling.
+ * 
+ * @see BudgetedQueutureExecutorService
+ * 
+ * @author Noah Fontes <nfontes@invectorate.com>
+ * 
+ * @param <E>
+ *            The type of elements held in this queue.
+ */
+final class BudgetedBlockingQueue<E> extends ForwardingBlockingQueue<E> {
+
+    private final BlockingQueue<E> delegate;
+    private final Semaphore budget;
+    private final int limit;
+    private final Weigher<Object> weigher;
+
+    BudgetedBlockingQueue(final BlockingQueue<E> delegate, final Semaphore budget, final int limit, final Weigher<Object> weigher) {
+        this.delegate = delegate;
+        this.budget = budget;
+        this.limit = limit;
+        this.weigher = weigher;
+    }
+
+    @Override
+    protected BlockingQueue<E> delegate() {
+        return this.delegate;
+    }
+
+    /**
+     * Returns the number of permits an element occupies. An element heavier than the entire budget is treated as
+     * weighing the entire budget, so that it can be added once the budget is otherwise unused.
+     */
+    private int weigh(final Object e) {
+        int weight = this.weigher.weigh(e);
+        Preconditions.checkState(weight >= 0, "weigher returned a negative weight for %s", e);
+        return Math.min(weight, this.limit);
+    }
+
+    private E released(final E e) {
+        if (e != null)
+            this.budget.release(this.weigh(e));
+        return e;
+    }
+
+    @Override
+    public void put(final E e) throws InterruptedException {
+        Preconditions.checkNotNull(e);
+
+        int weight = this.weigh(e);
+        this.budget.acquire(weight);
+        boolean added = false;
+        try {
+            this.delegate.put(e);
+            added = true;
+        } finally {
+            if (!added)
+                this.budget.release(weight);
+        }
+    }
+
+    @Override
+    public boolean offer(final E e, final long timeout, final TimeUnit unit) throws InterruptedException {
+        Preconditions.checkNotNull(e);
+
+        long deadline = System.nanoTime() + unit.toNanos(timeout);
+        int weight = this.weigh(e);
+        if (!this.budget.tryAcquire(weight, timeout, unit))
+            return false;
+        boolean added = false;
+        try {
+            added = this.delegate.offer(e, deadline - System.nanoTime(), TimeUnit.NANOSECONDS);
+            return added;
+        } finally {
+            if (!added)
+                this.budget.release(weight);
+        }
+    }
+
+    @Override
+    public boolean offer(final E e) {
+        Preconditions.checkNotNull(e);
+
+        int weight = this.weigh(e);
+        try {
+            /* Unlike tryAcquire(int), a timed acquisition honors the fairness of the semaphore. */
+            if (!this.budget.tryAcquire(weight, 0, TimeUnit.NANOSECONDS))
+                return false;
+        } catch (InterruptedException ie) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+        if (this.delegate.offer(e))
+            return true;
+        this.budget.release(weight);
+        return false;
+    }
+
+    @Override
+    public boolean add(final E e) {
+        if (this.offer(e))
+            return true;
+        throw new IllegalStateException("Queue full");
+    }
+
+    @Override
+    public boolean addAll(final Collection<? extends E> collection) {
+        return this.standardAddAll(collection);
+    }
+
+    @Override
+    public E poll() {
+        return this.released(this.delegate.poll());
+    }
+
+    @Override
+    public E poll(final long timeout, final TimeUnit unit) throws InterruptedException {
+        return this.released(this.delegate.poll(timeout, unit));
+    }
+
+    @Override
+    public E take() throws InterruptedException {
+        return this.released(this.delegate.take());
+    }
+
+    @Override
+    public E remove() {
+        return this.released(this.delegate.remove());
+    }
+
+    @Override
+    public boolean remove(final Object object) {
+        if (!this.delegate.remove(object))
+            return false;
+        this.budget.release(this.weigh(object));
+        return true;
+    }
+
+    @Override
+    public int remainingCapacity() {
+        return Math.min(this.delegate.remainingCapacity(), this.budget.availablePermits());
+    }
+
+    @Override
+    public void clear() {
+        while (this.poll() != null) {}
+    }
+
+    @Override
+    public int drainTo(final Collection<? super E> c) {
+        return this.drainTo(c, Integer.MAX_VALUE);
+    }
+
+    @Override
+    public int drainTo(final Collection<? super E> c, final int maxElements) {
+        int n = 0;
+        E e;
+        while (n < maxElements && (e = this.poll()) != null) {
+            c.add(e);
+            n++;
+        }
+        return n;
+    }
+
+    @Override
+    public boolean removeAll(final Collection<?> collection) {
+        return this.standardRemoveAll(collection);
+    }
+
+    @Override
+    public boolean retainAll(final Collection<?> collection) {
+        return this.standardRetainAll(collection);
+    }
+
+}
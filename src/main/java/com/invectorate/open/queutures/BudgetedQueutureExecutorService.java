@@ -0,0 +1,181 @@
+package com.invectorate.open.queutures;
+
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.google.common.base.Preconditions;
+import com.google.common.collect.Queues;
+
+/**
+ * A {@link QueutureExecutorService} that bounds the resources held by all of its queutures together.
+ * <p>
+ * Every queuture submitted to a {@link DelegatedQueutureExecutorService} buffers its results independently, so a large
+ * number of live queutures with modest backlogs can together hold an unbounded amount of memory. This executor service
+ * instead charges every buffered result against a single budget shared by all of its queutures:
+ * <ul>
+ * <li>Each result is weighed by a {@link Weigher} (by default, every result weighs one unit) when it is put into a
+ * {@link QueutureBox}, and its weight is returned to the budget when a consumer retrieves it or the queuture discards
+ * it.</li>
+ * <li>When the budget is exhausted, producers are handled according to an {@link OverflowPolicy}. Under
+ * {@link OverflowPolicy#block()}, producers wait for budget in the order they arrived, regardless of which queuture
+ * they are producing for. Under the other policies, results that do not fit in the budget are discarded instead.</li>
+ * <li>At most {@code maxActiveTasks} queutures may be submitted but not yet done at any time; further submissions are
+ * rejected with a {@link RejectedExecutionException}.</li>
+ * </ul>
+ * Results left in a queuture that completes normally continue to count against the budget until they are retrieved, so
+ * consumers should either drain or {@linkplain Queuture#cancel(boolean) cancel} the queutures they abandon. For the
+ * same reason, a consumer that reads one queuture to completion before starting on the next can wait forever if
+ * results it has not yet read from other queutures occupy the whole budget.
+ * 
+ * @author Noah Fontes <nfontes@invectorate.com>
+ */
+public class BudgetedQueutureExecutorService extends DelegatedQueutureExecutorService {
+
+    private static final Weigher<Object> SINGLETON_WEIGHER = new Weigher<Object>() {
+
+        @Override
+        public int weigh(final Object object) {
+            return 1;
+        }
+
+    };
+
+    private final int budget;
+    private final Semaphore available;
+    private final Weigher<Object> weigher;
+    private final OverflowPolicy overflowPolicy;
+
+    private final int maxActiveTasks;
+    private final AtomicInteger activeTasks = new AtomicInteger();
+
+    /**
+     * Create a new executor service that blocks producers while the given number of results are buffered across all of
+     * its queutures.
+     * 
+     * @param delegate
+     *            The executor service to delegate all executions to.
+     * @param maxBufferedResults
+     *            The maximum number of results to buffer across all queutures.
+     * @param maxActiveTasks
+     *            The maximum number of queutures that may be submitted but not yet done.
+     */
+    public BudgetedQueutureExecutorService(final ExecutorService delegate, final int maxBufferedResults, final int maxActiveTasks) {
+        this(delegate, maxBufferedResults, SINGLETON_WEIGHER, OverflowPolicy.block(), maxActiveTasks);
+    }
+
+    /**
+     * Create a new executor service that limits the total weight of results buffered across all of its queutures.
+     * 
+     * @param delegate
+     *            The executor service to delegate all executions to.
+     * @param budget
+     *            The maximum total weight of results to buffer across all queutures.
+     * @param weigher
+     *            The weigher used to determine the weight of each result. A result heavier than the entire budget is
+     *            charged as the entire budget.
+     * @param overflowPolicy
+     *            The policy to apply when a result does not fit within the remaining budget.
+     * @param maxActiveTasks
+     *            The maximum number of queutures that may be submitted but not yet done.
+     */
+    public BudgetedQueutureExecutorService(final ExecutorService delegate, final int budget, final Weigher<Object> weigher, final OverflowPolicy overflowPolicy, final int maxActiveTasks) {
+        super(delegate);
+
+        Preconditions.checkArgument(budget > 0, "budget must be positive");
+        Preconditions.checkNotNull(weigher, "weigher must be specified");
+        Preconditions.checkNotNull(overflowPolicy, "overflow policy must be specified");
+        Preconditions.checkArgument(maxActiveTasks > 0, "maxActiveTasks must be positive");
+
+        this.budget = budget;
+        this.available = new Semaphore(budget, true);
+        this.weigher = weigher;
+        this.overflowPolicy = overflowPolicy;
+        this.maxActiveTasks = maxActiveTasks;
+    }
+
+    /**
+     * Returns the portion of the budget not currently occupied by buffered results.
+     */
+    public int getAvailableBudget() {
+        return this.available.availablePermits();
+    }
+
+    /**
+     * Returns the number of queutures that have been submitted but are not yet done.
+     */
+    public int getActiveTaskCount() {
+        return this.activeTasks.get();
+    }
+
+    /**
+     * Create a new queuture whose results are charged against this executor service's budget.
+     * <p>
+     * Subclasses that override this method should pass the queue returned by {@link #newBudgetedQueue()} to the task
+     * they create, and must ensure that {@link #release()} is called exactly once when the task is done.
+     */
+    @Override
+    protected <V> RunnableQueuture<V> newTaskFor(final Informable<QueutureBox<V>> informable) {
+        return new BudgetedQueutureTask<V>(informable, this.<V> newBudgetedQueue(), this.overflowPolicy);
+    }
+
+    /**
+     * Returns a new unbounded queue whose elements are charged against this executor service's budget.
+     */
+    protected <V> BlockingQueue<V> newBudgetedQueue() {
+        return new BudgetedBlockingQueue<V>(Queues.<V> newLinkedBlockingQueue(), this.available, this.budget, this.weigher);
+    }
+
+    /**
+     * Marks a previously submitted queuture as done, allowing another to be submitted in its place.
+     */
+    protected void release() {
+        this.activeTasks.decrementAndGet();
+    }
+
+    @Override
+    public <V> Queuture<V> submit(final Informable<QueutureBox<V>> informable) {
+        Preconditions.checkNotNull(informable, "informable must be specified");
+
+        for (;;) {
+            int active = this.activeTasks.get();
+            if (active >= this.maxActiveTasks)
+                throw new RejectedExecutionException("too many active queutures (" + active + " of " + this.maxActiveTasks + ")");
+            if (this.activeTasks.compareAndSet(active, active + 1))
+                break;
+        }
+
+        RunnableQueuture<V> queuture;
+        try {
+            queuture = this.newTaskFor(informable);
+            this.execute(queuture);
+        } catch (RuntimeException e) {
+            this.release();
+            throw e;
+        } catch (Error e) {
+            this.release();
+            throw e;
+        }
+        return queuture;
+    }
+
+    private final class BudgetedQueutureTask<V> extends QueutureTask<V> {
+
+        private final AtomicBoolean released = new AtomicBoolean();
+
+        BudgetedQueutureTask(final Informable<QueutureBox<V>> informable, final BlockingQueue<V> queue, final OverflowPolicy overflowPolicy) {
+            super(informable, queue, overflowPolicy);
+        }
+
+        @Override
+        protected void done() {
+            if (this.released.compareAndSet(false, true))
+                BudgetedQueutureExecutorService.this.release();
+        }
+
+    }
+
+}
@@ -0,0 +1,131 @@
+package com.invectorate.open.queutures;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import com.google.common.base.Preconditions;
+
+/**
+ * A fixed set of {@link ByteBufferSlot}s carved out of a single, optionally direct, {@link ByteBuffer}.
+ * <p>
+ * All of the memory for the pool is allocated up front. Producers claim a slot, write into it in place, and put it into
+ * a {@link ByteBufferQueutureTask}; consumers read it and release it back to the pool. Claiming and releasing a slot
+ * does not allocate, so a steady stream of binary results creates no garbage for the slots themselves.
+ * <p>
+ * A pool may be shared between several tasks. Producers block in {@link #claim()} while every slot is in use, which
+ * bounds the memory held by undelivered results.
+ * 
+ * @see ByteBufferQueutureTask
+ * 
+ * @author Noah Fontes <nfontes@invectorate.com>
+ */
+public class ByteBufferPool {
+
+    private final int slotSize;
+    private final ByteBufferSlot[] slots;
+    private final BlockingQueue<ByteBufferSlot> free;
+
+    /**
+     * Create a new pool of heap buffers.
+     * 
+     * @param slotCount
+     *            The number of slots in the pool.
+     * @param slotSize
+     *            The size of each slot, in bytes.
+     */
+    public ByteBufferPool(final int slotCount, final int slotSize) {
+        this(slotCount, slotSize, false);
+    }
+
+    /**
+     * Create a new pool.
+     * 
+     * @param slotCount
+     *            The number of slots in the pool.
+     * @param slotSize
+     *            The size of each slot, in bytes.
+     * @param direct
+     *            Whether the slots should be allocated outside of the Java heap, as by
+     *            {@link ByteBuffer#allocateDirect(int)}.
+     */
+    public ByteBufferPool(final int slotCount, final int slotSize, final boolean direct) {
+        Preconditions.checkArgument(slotCount > 0, "slotCount must be positive");
+        Preconditions.checkArgument(slotSize > 0, "slotSize must be positive");
+        Preconditions.checkArgument((long) slotCount * slotSize <= Integer.MAX_VALUE, "pool must not exceed %s bytes", Integer.MAX_VALUE);
+
+        ByteBuffer memory = direct ? ByteBuffer.allocateDirect(slotCount * slotSize) : ByteBuffer.allocate(slotCount * slotSize);
+
+        this.slotSize = slotSize;
+        this.slots = new ByteBufferSlot[slotCount];
+        this.free = new ArrayBlockingQueue<ByteBufferSlot>(slotCount);
+        for (int i = 0; i < slotCount; i++) {
+            memory.limit((i + 1) * slotSize).position(i * slotSize);
+            this.slots[i] = new ByteBufferSlot(this, memory.slice());
+            this.free.add(this.slots[i]);
+        }
+    }
+
+    /**
+     * Claims a slot, waiting if necessary for one to be released.
+     * 
+     * @return The slot, cleared and ready to be written.
+     */
+    public ByteBufferSlot claim() throws InterruptedException {
+        return this.claimed(this.free.take());
+    }
+
+    /**
+     * Claims a slot, waiting up to the given amount of time for one to be released.
+     * 
+     * @return The slot, cleared and ready to be written, or {@code null} if no slot was released in time.
+     */
+    public ByteBufferSlot claim(final long timeout, final TimeUnit unit) throws InterruptedException {
+        return this.claimed(this.free.poll(timeout, unit));
+    }
+
+    /**
+     * Claims a slot if one is free.
+     * 
+     * @return The slot, cleared and ready to be written, or {@code null} if every slot is in use.
+     */
+    public ByteBufferSlot tryClaim() {
+        return this.claimed(this.free.poll());
+    }
+
+    private ByteBufferSlot claimed(final ByteBufferSlot slot) {
+        if (slot != null)
+            slot.claimed();
+        return slot;
+    }
+
+    /**
+     * Returns a slot to the pool. Called by {@link ByteBufferSlot#release()}.
+     */
+    void release(final ByteBufferSlot slot) {
+        this.free.add(slot);
+    }
+
+    /**
+     * Returns the number of slots in this pool.
+     */
+    public int capacity() {
+        return this.slots.length;
+    }
+
+    /**
+     * Returns the size of each slot, in bytes.
+     */
+    public int getSlotSize() {
+        return this.slotSize;
+    }
+
+    /**
+     * Returns the number of slots that are not currently claimed.
+     */
+    public int getAvailableCount() {
+        return this.free.size();
+    }
+
+}
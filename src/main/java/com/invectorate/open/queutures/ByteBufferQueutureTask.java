@@ -0,0 +1,126 @@
+package com.invectorate.open.queutures;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * A {@link QueutureTask} that delivers binary results in {@link ByteBufferSlot}s drawn from a {@link ByteBufferPool},
+ * without allocating or copying them.
+ * <p>
+ * The computation claims a slot from the pool, writes its result into the slot's buffer, and puts the slot into the
+ * {@link QueutureBox}. Each call to {@link #next()} returns a published slot; the consumer reads the result from
+ * {@link ByteBufferSlot#contents()} and must {@link ByteBufferSlot#release() release} the slot when it is done with it.
+ * <p>
+ * Putting a slot hands it over to the task even if the put returns {@code false} or throws an exception; the producer
+ * must not use or release the slot afterward. Slots that are never read because they were discarded, or because the
+ * task was cancelled or failed, are released automatically. Slots left unread after the computation completes
+ * normally stay in the task until they are read; a consumer that abandons such a task should call {@link #discard()}
+ * to return them to the pool.
+ * 
+ * <pre>
+ * final ByteBufferPool pool = new ByteBufferPool(64, 65536, true);
+ * ByteBufferQueutureTask task = new ByteBufferQueutureTask(new Informable&lt;QueutureBox&lt;ByteBufferSlot&gt;&gt;() {
+ *     public void inform(QueutureBox&lt;ByteBufferSlot&gt; box) {
+ *         ByteBufferSlot slot = pool.claim();
+ *         slot.buffer().put(page);
+ *         if (!box.put(slot))
+ *             return;
+ *     }
+ * }, pool);
+ * </pre>
+ * 
+ * @author Noah Fontes <nfontes@invectorate.com>
+ */
+public class ByteBufferQueutureTask extends QueutureTask<ByteBufferSlot> {
+
+    private final ByteBufferSlotQueue queue;
+
+    /**
+     * Create a new {@code ByteBufferQueutureTask} that will execute the given {@link Informable} as its computation.
+     * 
+     * @param informable
+     *            The computation to execute.
+     * @param pool
+     *            The pool the computation claims slots from. Since every undelivered result holds a slot, the task
+     *            never needs to hold more results than the pool has slots.
+     */
+    public ByteBufferQueutureTask(final Informable<QueutureBox<ByteBufferSlot>> informable, final ByteBufferPool pool) {
+        this(informable, new ByteBufferSlotQueue(pool.capacity()));
+    }
+
+    private ByteBufferQueutureTask(final Informable<QueutureBox<ByteBufferSlot>> informable, final ByteBufferSlotQueue queue) {
+        super(new SlotInformable(informable), queue);
+        this.queue = queue;
+    }
+
+    /**
+     * Gives up on any results not yet read: cancels the computation if it has not completed, and releases every slot
+     * still held by this task back to the pool. Consumers still reading from this task may miss results.
+     */
+    public void discard() {
+        this.cancel(false);
+        this.queue.clear();
+    }
+
+    private static final class SlotInformable implements Informable<QueutureBox<ByteBufferSlot>> {
+
+        private final Informable<QueutureBox<ByteBufferSlot>> informable;
+
+        SlotInformable(final Informable<QueutureBox<ByteBufferSlot>> informable) {
+            this.informable = informable;
+        }
+
+        @Override
+        public void inform(final QueutureBox<ByteBufferSlot> box) {
+            this.informable.inform(new SlotBox(box));
+        }
+
+    }
+
+    /**
+     * Takes ownership of slots put into the underlying box, releasing any that never made it into the queue. Slots
+     * that did make it into the queue are released by whoever removes them, which may be the cancellation of the task
+     * before the put even returns.
+     */
+    private static final class SlotBox implements QueutureBox<ByteBufferSlot> {
+
+        private final QueutureBox<ByteBufferSlot> box;
+
+        SlotBox(final QueutureBox<ByteBufferSlot> box) {
+            this.box = box;
+        }
+
+        @Override
+        public boolean isCancelled() {
+            return this.box.isCancelled();
+        }
+
+        @Override
+        public boolean put(final ByteBufferSlot slot) throws InterruptedException {
+            long token = slot.token();
+            boolean added = false;
+            try {
+                added = this.box.put(slot);
+                return added;
+            } finally {
+                if (!added)
+                    slot.releaseIfClaimed(token);
+            }
+        }
+
+        @Override
+        public boolean put(final ByteBufferSlot slot, final long timeout, final TimeUnit unit) throws TimeoutException, InterruptedException {
+            long token = slot.token();
+            boolean added = false;
+            try {
+                added = this.box.put(slot, timeout, unit);
+                return added;
+            } finally {
+                if (!added)
+                    slot.releaseIfClaimed(token);
+            }
+        }
+
+    }
+
+}
@@ -0,0 +1,139 @@
+package com.invectorate.open.queutures;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.atomic.AtomicLongFieldUpdater;
+
+import com.google.common.base.Preconditions;
+
+/**
+ * A region of a {@link ByteBufferPool} that carries one binary result from a producer to a consumer.
+ * <p>
+ * A slot moves through three states. A producer {@linkplain ByteBufferPool#claim() claims} it and writes the result into
+ * {@link #buffer()}, starting at position zero; the bytes written are those before the buffer's position. Putting the
+ * slot into the {@link QueutureBox} of a {@link ByteBufferQueutureTask} hands it over to the task, whatever the outcome
+ * of the put, after which the producer must not touch it again; if the result is discarded, the task returns the slot
+ * to the pool itself. The consumer that receives it reads the result from {@link #contents()}, a read-only view of the
+ * same memory, and then calls {@link #release()} to return the slot to the pool. A producer that decides not to put a
+ * slot at all must release it instead.
+ * 
+ * @author Noah Fontes <nfontes@invectorate.com>
+ */
+public final class ByteBufferSlot {
+
+    private static final long FREE = 0L;
+    private static final long CLAIMED = 1L;
+    private static final long PUBLISHED = 2L;
+    private static final long STATUS_MASK = 3L;
+    private static final long GENERATION = 4L;
+
+    private static final AtomicLongFieldUpdater<ByteBufferSlot> STATE = AtomicLongFieldUpdater.newUpdater(ByteBufferSlot.class, "state");
+
+    private final ByteBufferPool pool;
+    private final ByteBuffer buffer;
+    private final ByteBuffer view;
+
+    /**
+     * The status of the slot in the low bits, and the number of times it has been claimed in the rest, so that a stale
+     * {@linkplain #token() token} can never match a later claim.
+     */
+    private volatile long state = ByteBufferSlot.FREE;
+
+    ByteBufferSlot(final ByteBufferPool pool, final ByteBuffer buffer) {
+        this.pool = pool;
+        this.buffer = buffer;
+        this.view = buffer.asReadOnlyBuffer();
+    }
+
+    /**
+     * Returns the buffer the producer writes the result into.
+     * 
+     * @throws IllegalStateException
+     *             If the slot is not currently claimed by a producer.
+     */
+    public ByteBuffer buffer() {
+        Preconditions.checkState(this.status(this.state) == ByteBufferSlot.CLAIMED, "slot is not claimed");
+        return this.buffer;
+    }
+
+    /**
+     * Returns a read-only view of the result, from position zero to the end of the bytes written by the producer.
+     * 
+     * @throws IllegalStateException
+     *             If the slot has not been published.
+     */
+    public ByteBuffer contents() {
+        Preconditions.checkState(this.status(this.state) == ByteBufferSlot.PUBLISHED, "slot is not published");
+        return this.view;
+    }
+
+    /**
+     * Returns this slot to its pool. The slot and its buffers must not be used afterward.
+     * 
+     * @throws IllegalStateException
+     *             If the slot has already been released.
+     */
+    public void release() {
+        for (;;) {
+            long s = this.state;
+            Preconditions.checkState(this.status(s) != ByteBufferSlot.FREE, "slot has already been released");
+            if (ByteBufferSlot.STATE.compareAndSet(this, s, this.with(s, ByteBufferSlot.FREE)))
+                break;
+        }
+        this.pool.release(this);
+    }
+
+    private long status(final long s) {
+        return s & ByteBufferSlot.STATUS_MASK;
+    }
+
+    private long with(final long s, final long status) {
+        return s & ~ByteBufferSlot.STATUS_MASK | status;
+    }
+
+    void claimed() {
+        this.buffer.clear();
+        this.state = this.with(this.state + ByteBufferSlot.GENERATION, ByteBufferSlot.CLAIMED);
+    }
+
+    /**
+     * Returns a token identifying the current claim of this slot.
+     * 
+     * @throws IllegalStateException
+     *             If the slot is not currently claimed by a producer.
+     */
+    long token() {
+        long s = this.state;
+        Preconditions.checkState(this.status(s) == ByteBufferSlot.CLAIMED, "slot is not claimed");
+        return s;
+    }
+
+    /**
+     * Returns this slot to its pool if it is still claimed under the given token, that is, if it was never added to a
+     * queue. A slot that was added to a queue is released by whoever removes it.
+     */
+    void releaseIfClaimed(final long token) {
+        if (ByteBufferSlot.STATE.compareAndSet(this, token, this.with(token, ByteBufferSlot.FREE)))
+            this.pool.release(this);
+    }
+
+    /**
+     * Makes the bytes written so far available to the consumer. Called by the queue before the slot becomes visible to
+     * consumers.
+     */
+    void publish() {
+        long s = this.state;
+        Preconditions.checkState(this.status(s) == ByteBufferSlot.CLAIMED && ByteBufferSlot.STATE.compareAndSet(this, s, this.with(s, ByteBufferSlot.PUBLISHED)), "slot is not claimed");
+        this.view.position(0);
+        this.view.limit(this.buffer.position());
+    }
+
+    /**
+     * Hands the slot back to the producer after it could not be added to a queue.
+     */
+    void unpublish() {
+        long s = this.state;
+        if (this.status(s) == ByteBufferSlot.PUBLISHED)
+            ByteBufferSlot.STATE.compareAndSet(this, s, this.with(s, ByteBufferSlot.CLAIMED));
+    }
+
+}
@@ -0,0 +1,84 @@
+package com.invectorate.open.queutures;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import com.google.common.util.concurrent.ForwardingBlockingQueue;
+
+/**
+ * A {@link BlockingQueue} of {@link ByteBufferSlot}s that publishes slots as they are added and releases them back to
+ * their pool when the queue is cleared.
+ * <p>
+ * The queue is backed by an {@link ArrayBlockingQueue}, so adding and removing slots does not allocate.
+ * 
+ * @see ByteBufferQueutureTask
+ * 
+ * @author Noah Fontes <nfontes@invectorate.com>
+ */
+final class ByteBufferSlotQueue extends ForwardingBlockingQueue<ByteBufferSlot> {
+
+    private final BlockingQueue<ByteBufferSlot> delegate;
+
+    ByteBufferSlotQueue(final int capacity) {
+        this.delegate = new ArrayBlockingQueue<ByteBufferSlot>(capacity);
+    }
+
+    @Override
+    protected BlockingQueue<ByteBufferSlot> delegate() {
+        return this.delegate;
+    }
+
+    @Override
+    public boolean add(final ByteBufferSlot slot) {
+        if (!this.offer(slot))
+            throw new IllegalStateException("Queue full");
+        return true;
+    }
+
+    @Override
+    public boolean offer(final ByteBufferSlot slot) {
+        slot.publish();
+        if (this.delegate.offer(slot))
+            return true;
+        slot.unpublish();
+        return false;
+    }
+
+    @Override
+    public void put(final ByteBufferSlot slot) throws InterruptedException {
+        slot.publish();
+        boolean added = false;
+        try {
+            this.delegate.put(slot);
+            added = true;
+        } finally {
+            if (!added)
+                slot.unpublish();
+        }
+    }
+
+    @Override
+    public boolean offer(final ByteBufferSlot slot, final long timeout, final TimeUnit unit) throws InterruptedException {
+        slot.publish();
+        boolean added = false;
+        try {
+            added = this.delegate.offer(slot, timeout, unit);
+            return added;
+        } finally {
+            if (!added)
+                slot.unpublish();
+        }
+    }
+
+    /**
+     * Removes all of the slots from this queue and releases them, since nobody will read them.
+     */
+    @Override
+    public void clear() {
+        ByteBufferSlot slot;
+        while ((slot = this.delegate.poll()) != null)
+            slot.release();
+    }
+
+}
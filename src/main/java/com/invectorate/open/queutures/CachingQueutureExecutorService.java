@@ -0,0 +1,186 @@
+package com.invectorate.open.queutures;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.google.common.base.Preconditions;
+
+/**
+ * A {@link QueutureExecutorService} that shares one computation among all submissions with the same key.
+ * <p>
+ * The first call to {@link #submit(Object, Informable)} for a given key starts the computation as a
+ * {@link BroadcastQueutureTask}. Every call for the same key, whether made while the computation is running or after it
+ * has finished, receives its own subscription to that computation: it first replays the results still held in the
+ * task's buffer, then follows the live output. Each caller therefore reads the entire output independently, as long as
+ * it fits in the buffer; results older than that are not replayed to callers that arrive late.
+ * <p>
+ * Once a computation has completed normally, it remains available for {@code expireAfter} and until more than
+ * {@code maximumFinished} other computations have completed since. A computation that fails or is cancelled is
+ * forgotten immediately, so that the next submission for its key starts it again. Cancelling a subscription only
+ * unsubscribes; the computation keeps running for the benefit of the other subscribers.
+ * <p>
+ * The producer of each computation waits for its slowest subscriber, so a subscriber that stops reading without
+ * cancelling will eventually stall the computation for everybody.
+ * 
+ * @author Noah Fontes <nfontes@invectorate.com>
+ * 
+ * @param <K>
+ *            The type of key identifying each computation.
+ */
+public class CachingQueutureExecutorService<K> extends DelegatedQueutureExecutorService {
+
+    private final int replayCapacity;
+    private final int maximumFinished;
+    private final long expireAfterNanos;
+
+    private final ConcurrentMap<K, Entry> entries = new ConcurrentHashMap<K, Entry>();
+    /** Computations that have completed normally, in the order they completed. */
+    private final Queue<Entry> finished = new ConcurrentLinkedQueue<Entry>();
+    private final AtomicInteger finishedCount = new AtomicInteger();
+
+    /**
+     * Create a new caching executor service.
+     * 
+     * @param delegate
+     *            The executor service to delegate all executions to.
+     * @param replayCapacity
+     *            The number of results each computation keeps for subscribers; rounded up to a power of two.
+     * @param maximumFinished
+     *            The maximum number of completed computations to keep.
+     * @param expireAfter
+     *            How long to keep each completed computation.
+     * @param unit
+     *            The unit of {@code expireAfter}.
+     */
+    public CachingQueutureExecutorService(final ExecutorService delegate, final int replayCapacity, final int maximumFinished, final long expireAfter, final TimeUnit unit) {
+        super(delegate);
+
+        Preconditions.checkArgument(replayCapacity > 0, "replayCapacity must be positive");
+        Preconditions.checkArgument(maximumFinished >= 0, "maximumFinished must not be negative");
+        Preconditions.checkArgument(expireAfter >= 0, "expireAfter must not be negative");
+
+        this.replayCapacity = replayCapacity;
+        this.maximumFinished = maximumFinished;
+        this.expireAfterNanos = unit.toNanos(expireAfter);
+    }
+
+    /**
+     * Submits the computation identified by the given key, or subscribes to it if it is already running or has recently
+     * completed.
+     * <p>
+     * All computations submitted with equal keys must produce results of the same type.
+     * 
+     * @param key
+     *            The key identifying the computation.
+     * @param informable
+     *            The computation to run if none is running or cached for the key.
+     * 
+     * @return A new subscription to the computation.
+     */
+    @SuppressWarnings("unchecked")
+    public <V> Queuture<V> submit(final K key, final Informable<QueutureBox<V>> informable) {
+        Preconditions.checkNotNull(key, "key must be specified");
+        Preconditions.checkNotNull(informable, "informable must be specified");
+
+        this.evict();
+
+        for (;;) {
+            Entry existing = this.entries.get(key);
+            if (existing != null && !existing.isExpired(System.nanoTime()))
+                return (Queuture<V>) existing.task.subscribe(true);
+
+            Entry entry = new Entry(key);
+            BroadcastQueutureTask<V> task = new CachedQueutureTask<V>(informable, entry);
+            entry.task = task;
+            if (existing == null ? this.entries.putIfAbsent(key, entry) != null : !this.entries.replace(key, existing, entry))
+                continue;
+
+            Queuture<V> subscription = task.subscribe(true);
+            try {
+                this.execute(task);
+            } catch (RuntimeException e) {
+                this.entries.remove(key, entry);
+                task.cancel(false);
+                throw e;
+            }
+            return subscription;
+        }
+    }
+
+    /**
+     * Returns the number of computations currently running or cached.
+     */
+    public int size() {
+        return this.entries.size();
+    }
+
+    /**
+     * Forgets completed computations that have expired or exceed the maximum number to keep.
+     */
+    private void evict() {
+        long now = System.nanoTime();
+        Entry head;
+        while ((head = this.finished.peek()) != null) {
+            if (this.finishedCount.get() <= this.maximumFinished && !head.isExpired(now))
+                break;
+            if (this.finished.remove(head)) {
+                this.finishedCount.decrementAndGet();
+                this.entries.remove(head.key, head);
+            }
+        }
+    }
+
+    private final class Entry {
+
+        final K key;
+        volatile BroadcastQueutureTask<?> task;
+        /** When the computation completed; only meaningful once {@link #finished} is set. */
+        long finishedAt;
+        volatile boolean finished = false;
+
+        Entry(final K key) {
+            this.key = key;
+        }
+
+        boolean isExpired(final long now) {
+            return this.finished && now - this.finishedAt >= CachingQueutureExecutorService.this.expireAfterNanos;
+        }
+
+    }
+
+    private final class CachedQueutureTask<V> extends BroadcastQueutureTask<V> {
+
+        private final Entry entry;
+
+        CachedQueutureTask(final Informable<QueutureBox<V>> informable, final Entry entry) {
+            super(informable, CachingQueutureExecutorService.this.replayCapacity);
+            this.entry = entry;
+        }
+
+        @Override
+        protected void setException(final Throwable t) {
+            CachingQueutureExecutorService.this.entries.remove(this.entry.key, this.entry);
+            super.setException(t);
+        }
+
+        @Override
+        protected void done() {
+            if (this.isCancelled()) {
+                CachingQueutureExecutorService.this.entries.remove(this.entry.key, this.entry);
+            } else if (CachingQueutureExecutorService.this.entries.get(this.entry.key) == this.entry) {
+                this.entry.finishedAt = System.nanoTime();
+                this.entry.finished = true;
+                CachingQueutureExecutorService.this.finished.add(this.entry);
+                CachingQueutureExecutorService.this.finishedCount.incrementAndGet();
+                CachingQueutureExecutorService.this.evict();
+            }
+        }
+
+    }
+
+}
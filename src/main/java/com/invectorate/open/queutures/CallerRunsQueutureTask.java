@@ -0,0 +1,227 @@
+package com.invectorate.open.queutures;
+
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.google.common.base.Preconditions;
+import com.google.common.util.concurrent.ForwardingBlockingQueue;
+
+/**
+ * A {@link QueutureTask} whose computation is run by the first consumer to ask for a result, unless an executor has
+ * already started it.
+ * <p>
+ * For pull-based pipelines, where a consumer is always waiting on each result, handing every result from a producer
+ * thread to a consumer thread is pure overhead. When the first call to {@link #next()} finds that the computation has
+ * not started yet, it claims the computation and runs it to completion in the calling thread, in the manner of
+ * {@link java.util.concurrent.ThreadPoolExecutor.CallerRunsPolicy}. If the task is also submitted to an executor, the
+ * executor's later attempt to run it does nothing. {@link #next(long, TimeUnit)} never runs the computation, since it
+ * could not honor its timeout while doing so; it waits for an executor like any other {@link QueutureTask}.
+ * <p>
+ * <b>An inline run materializes the entire output of the computation before the first result is returned.</b> The
+ * consuming thread cannot take results while it is busy producing them, so results that do not fit in the queue are
+ * held in an overflow buffer rather than blocking the producer. This makes inline runs safe even for a
+ * {@link SynchronousQueue}, at the cost of the queue's bound. It also makes this class unsuitable for long-running or
+ * unbounded computations, which should be run by an executor instead. The overflow buffer is bounded, by default to
+ * {@link #DEFAULT_MAX_OVERFLOW} results, and a computation that outgrows it while running inline fails. Results
+ * produced on any other thread are subject to the queue's usual semantics.
+ * 
+ * @author Noah Fontes <nfontes@invectorate.com>
+ * 
+ * @param <V>
+ *            The type of object being generated by the computation.
+ */
+public class CallerRunsQueutureTask<V> extends QueutureTask<V> {
+
+    /** The number of results held beyond the capacity of the queue during an inline run, unless otherwise given. */
+    public static final int DEFAULT_MAX_OVERFLOW = 1024;
+
+    private final OverflowingQueue<V> queue;
+    private final AtomicBoolean started = new AtomicBoolean();
+    /** Held while cancelling, so that an inline run can wait out a cancellation interrupt aimed at it. */
+    private final Object cancelLock = new Object();
+
+    /**
+     * Create a new {@code CallerRunsQueutureTask} that will execute the given {@link Informable} as its computation,
+     * passing results back to this class using the given {@link BlockingQueue}, and holding at most
+     * {@link #DEFAULT_MAX_OVERFLOW} results that do not fit in the queue during an inline run.
+     * 
+     * @param informable
+     *            The computation to execute.
+     * @param queue
+     *            The queue to use to pass results to this class.
+     * 
+     * @see QueutureTask#QueutureTask(Informable, BlockingQueue)
+     */
+    public CallerRunsQueutureTask(final Informable<QueutureBox<V>> informable, final BlockingQueue<V> queue) {
+        this(informable, new OverflowingQueue<V>(queue, CallerRunsQueutureTask.DEFAULT_MAX_OVERFLOW));
+    }
+
+    /**
+     * Create a new {@code CallerRunsQueutureTask} that will execute the given {@link Informable} as its computation,
+     * passing results back to this class using the given {@link BlockingQueue}, and holding at most the given number of
+     * results that do not fit in the queue during an inline run.
+     * 
+     * @param informable
+     *            The computation to execute.
+     * @param queue
+     *            The queue to use to pass results to this class.
+     * @param maxOverflow
+     *            The maximum number of results to hold beyond the capacity of the queue during an inline run. Putting
+     *            any more throws an {@link IllegalStateException} from the {@link QueutureBox}, which fails the
+     *            computation unless it is caught.
+     */
+    public CallerRunsQueutureTask(final Informable<QueutureBox<V>> informable, final BlockingQueue<V> queue, final int maxOverflow) {
+        this(informable, new OverflowingQueue<V>(queue, maxOverflow));
+    }
+
+    private CallerRunsQueutureTask(final Informable<QueutureBox<V>> informable, final OverflowingQueue<V> queue) {
+        super(informable, queue);
+        this.queue = queue;
+    }
+
+    @Override
+    public void run() {
+        this.started.set(true);
+        super.run();
+    }
+
+    @Override
+    public V next() throws InterruptedException, ExecutionException {
+        this.runIfNotStarted();
+        return super.next();
+    }
+
+    private void runIfNotStarted() {
+        if (this.started.get() || !this.started.compareAndSet(false, true))
+            return;
+
+        this.queue.inlineProducer = Thread.currentThread();
+        try {
+            super.run();
+        } finally {
+            this.queue.inlineProducer = null;
+        }
+
+        /*
+         * While running inline, this thread was the runner, so cancel(true) may have interrupted it. That interrupt was
+         * meant for the computation, not the consumer, so clear it once any cancellation in progress has finished.
+         */
+        synchronized (this.cancelLock) {
+            if (this.isCancelled())
+                Thread.interrupted();
+        }
+    }
+
+    @Override
+    public boolean cancel(final boolean mayInterruptIfRunning) {
+        synchronized (this.cancelLock) {
+            return super.cancel(mayInterruptIfRunning);
+        }
+    }
+
+    /**
+     * A queue that accepts every element offered by the inline producer, keeping those that do not fit in the backing
+     * queue in an overflow buffer.
+     * <p>
+     * Once the overflow buffer is in use, all further elements from the inline producer go to it, so every element in
+     * the backing queue is older than every element in the overflow buffer and draining the backing queue first
+     * preserves order.
+     */
+    private static final class OverflowingQueue<V> extends ForwardingBlockingQueue<V> {
+
+        private final BlockingQueue<V> delegate;
+        private final ConcurrentLinkedQueue<V> overflow = new ConcurrentLinkedQueue<V>();
+        private final int maxOverflow;
+        /** The number of elements in the overflow buffer, which is expensive to count directly. */
+        private final AtomicInteger overflowSize = new AtomicInteger();
+
+        volatile Thread inlineProducer;
+
+        OverflowingQueue(final BlockingQueue<V> delegate, final int maxOverflow) {
+            Preconditions.checkArgument(maxOverflow >= 0, "maxOverflow must not be negative");
+
+            this.delegate = delegate;
+            this.maxOverflow = maxOverflow;
+        }
+
+        @Override
+        protected BlockingQueue<V> delegate() {
+            return this.delegate;
+        }
+
+        private boolean isInline() {
+            return Thread.currentThread() == this.inlineProducer;
+        }
+
+        private void overflow(final V e) {
+            if (this.overflow.isEmpty() && this.delegate.offer(e))
+                return;
+            if (this.overflowSize.get() >= this.maxOverflow)
+                throw new IllegalStateException("inline run produced more than " + this.maxOverflow + " results beyond the capacity of the queue");
+            this.overflowSize.incrementAndGet();
+            this.overflow.add(e);
+        }
+
+        private V pollOverflow() {
+            V e = this.overflow.poll();
+            if (e != null)
+                this.overflowSize.decrementAndGet();
+            return e;
+        }
+
+        @Override
+        public void put(final V e) throws InterruptedException {
+            if (this.isInline())
+                this.overflow(e);
+            else
+                this.delegate.put(e);
+        }
+
+        @Override
+        public boolean offer(final V e, final long timeout, final TimeUnit unit) throws InterruptedException {
+            if (this.isInline()) {
+                this.overflow(e);
+                return true;
+            }
+            return this.delegate.offer(e, timeout, unit);
+        }
+
+        @Override
+        public boolean offer(final V e) {
+            if (this.isInline()) {
+                this.overflow(e);
+                return true;
+            }
+            return this.delegate.offer(e);
+        }
+
+        @Override
+        public V poll() {
+            V e = this.delegate.poll();
+            return e != null ? e : this.pollOverflow();
+        }
+
+        @Override
+        public boolean isEmpty() {
+            return this.delegate.isEmpty() && this.overflow.isEmpty();
+        }
+
+        @Override
+        public int size() {
+            return this.delegate.size() + this.overflowSize.get();
+        }
+
+        @Override
+        public void clear() {
+            this.delegate.clear();
+            while (this.pollOverflow() != null) {}
+        }
+
+    }
+
+}
@@ -0,0 +1,182 @@
+package com.invectorate.open.queutures;
+
+import java.util.Iterator;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+
+import com.google.common.base.Preconditions;
+import com.google.common.collect.Queues;
+import com.google.common.collect.Sets;
+
+/**
+ * A {@link QueutureExecutorService} that starts the computations somebody is waiting on first.
+ * <p>
+ * A {@link DelegatedQueutureExecutorService} starts computations in the order they were submitted, whether or not
+ * anyone is reading their results. This executor service instead holds submitted computations in two queues: a queue
+ * of computations whose queuture has a consumer waiting in {@link Queuture#next()} (or a pending
+ * {@link QueutureTask#nextAsync()} request), and a queue of everything else. Whenever the delegate has a thread
+ * available, it starts the oldest computation with a waiting consumer, falling back to the oldest computation overall
+ * only when nobody is waiting.
+ * <p>
+ * If a capacity is given, each queuture buffers at most that many results, so a computation whose consumer is not
+ * keeping up is paused in {@link QueutureBox#put(Object)} rather than consuming CPU to produce results nobody is
+ * reading.
+ * 
+ * @author Noah Fontes <nfontes@invectorate.com>
+ */
+public class DemandQueutureExecutorService extends DelegatedQueutureExecutorService {
+
+    private final int capacity;
+
+    /** Guards {@link #demanded} and {@link #submitted}. */
+    private final Object lock = new Object();
+    /** Unstarted computations whose consumers are waiting for results, in the order demand arrived. */
+    private final Set<DemandQueutureTask<?>> demanded = Sets.newLinkedHashSet();
+    /** All unstarted computations, in submission order. */
+    private final Set<DemandQueutureTask<?>> submitted = Sets.newLinkedHashSet();
+
+    /**
+     * Create a new executor service whose queutures buffer an unbounded number of results.
+     * 
+     * @param delegate
+     *            The executor service to delegate all executions to.
+     */
+    public DemandQueutureExecutorService(final ExecutorService delegate) {
+        this(delegate, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Create a new executor service whose queutures each buffer up to the given number of results.
+     * 
+     * @param delegate
+     *            The executor service to delegate all executions to.
+     * @param capacity
+     *            The maximum number of undelivered results each queuture may hold.
+     */
+    public DemandQueutureExecutorService(final ExecutorService delegate, final int capacity) {
+        super(delegate);
+
+        Preconditions.checkArgument(capacity > 0, "capacity must be positive");
+
+        this.capacity = capacity;
+    }
+
+    /**
+     * Create a new queuture that reports demand for its results to this executor service, using a
+     * {@link java.util.concurrent.LinkedBlockingQueue} bounded by this executor service's capacity.
+     */
+    @Override
+    protected <V> RunnableQueuture<V> newTaskFor(final Informable<QueutureBox<V>> informable) {
+        return new DemandQueutureTask<V>(informable, Queues.<V> newLinkedBlockingQueue(this.capacity));
+    }
+
+    @Override
+    public <V> Queuture<V> submit(final Informable<QueutureBox<V>> informable) {
+        Preconditions.checkNotNull(informable, "informable must be specified");
+
+        RunnableQueuture<V> queuture = this.newTaskFor(informable);
+        if (!(queuture instanceof DemandQueutureTask)) {
+            this.execute(queuture);
+            return queuture;
+        }
+
+        DemandQueutureTask<V> task = (DemandQueutureTask<V>) queuture;
+        synchronized (this.lock) {
+            this.submitted.add(task);
+        }
+        try {
+            this.execute(new Dispatcher());
+        } catch (RuntimeException e) {
+            /*
+             * One computation will now never be dispatched. Usually it is this one, but if another dispatcher already
+             * claimed it, cancel whichever computation was left behind so that nobody waits on it forever.
+             */
+            DemandQueutureTask<?> orphan = this.claim(task) ? task : this.claimNext();
+            orphan.cancel(false);
+            throw e;
+        }
+        return task;
+    }
+
+    /**
+     * Claims the most urgent computation that has not yet been started, removing it from both queues.
+     * <p>
+     * Exactly one dispatcher is executed for every computation submitted, and every dispatcher claims exactly one
+     * computation, so a dispatcher always finds a computation to claim.
+     */
+    private DemandQueutureTask<?> claimNext() {
+        synchronized (this.lock) {
+            Iterator<DemandQueutureTask<?>> it = this.demanded.isEmpty() ? this.submitted.iterator() : this.demanded.iterator();
+            if (!it.hasNext())
+                throw new IllegalStateException("no computation available to dispatch");
+            DemandQueutureTask<?> task = it.next();
+            this.claim(task);
+            return task;
+        }
+    }
+
+    /**
+     * Claims the given computation, if it has not already been claimed.
+     */
+    private boolean claim(final DemandQueutureTask<?> task) {
+        synchronized (this.lock) {
+            if (!this.submitted.remove(task))
+                return false;
+            this.demanded.remove(task);
+            task.claimed = true;
+            return true;
+        }
+    }
+
+    /**
+     * Returns the number of computations waiting to be started.
+     */
+    int getPendingCount() {
+        synchronized (this.lock) {
+            return this.submitted.size();
+        }
+    }
+
+    /**
+     * Returns the number of computations waiting to be started whose consumers are waiting for results.
+     */
+    int getDemandedCount() {
+        synchronized (this.lock) {
+            return this.demanded.size();
+        }
+    }
+
+    private final class Dispatcher implements Runnable {
+
+        @Override
+        public void run() {
+            DemandQueutureExecutorService.this.claimNext().run();
+        }
+
+    }
+
+    private final class DemandQueutureTask<V> extends QueutureTask<V> {
+
+        /** Set once a dispatcher has claimed this computation, so that later demand skips the lock. */
+        volatile boolean claimed = false;
+
+        DemandQueutureTask(final Informable<QueutureBox<V>> informable, final BlockingQueue<V> queue) {
+            super(informable, queue);
+        }
+
+        @Override
+        protected void demanded() {
+            if (this.claimed)
+                return;
+
+            DemandQueutureExecutorService outer = DemandQueutureExecutorService.this;
+            synchronized (outer.lock) {
+                if (outer.submitted.contains(this))
+                    outer.demanded.add(this);
+            }
+        }
+
+    }
+
+}
@@ -0,0 +1,72 @@
+package com.invectorate.open.queutures;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.ForkJoinWorkerThread;
+
+import com.google.common.base.Preconditions;
+import com.google.common.collect.Queues;
+
+/**
+ * A {@link QueutureExecutorService} that runs queutures in a work-stealing {@link ForkJoinPool}.
+ * <p>
+ * Every worker of a {@link ForkJoinPool} has its own deque of tasks, so submitting many small computations does not
+ * contend on a single shared work queue the way it does with a {@link java.util.concurrent.ThreadPoolExecutor}.
+ * Computations submitted from outside the pool are executed as {@link ForkJoinTask}s; computations submitted from
+ * within one of the pool's own workers (for example, an {@link Informable} that spawns child queutures) are forked onto
+ * that worker's deque, where the submitting worker can reclaim and run them itself when it waits for their results.
+ * 
+ * @see ForkJoinQueutureTask
+ * 
+ * @author Noah Fontes <nfontes@invectorate.com>
+ */
+public class ForkJoinQueutureExecutorService extends DelegatedQueutureExecutorService {
+
+    private final ForkJoinPool pool;
+
+    /**
+     * Create a new executor service backed by a new {@link ForkJoinPool} with parallelism equal to the number of
+     * available processors.
+     */
+    public ForkJoinQueutureExecutorService() {
+        this(new ForkJoinPool());
+    }
+
+    /**
+     * Create a new executor service backed by the given {@link ForkJoinPool}.
+     * 
+     * @param pool
+     *            The pool to execute all computations in.
+     */
+    public ForkJoinQueutureExecutorService(final ForkJoinPool pool) {
+        super(Preconditions.checkNotNull(pool, "pool must be specified"));
+        this.pool = pool;
+    }
+
+    /**
+     * Create a new queuture that can be executed later using a default queue implementation, an unbounded
+     * {@link java.util.concurrent.LinkedBlockingQueue}.
+     * 
+     * @return A new {@link ForkJoinQueutureTask}.
+     */
+    @Override
+    protected <V> RunnableQueuture<V> newTaskFor(final Informable<QueutureBox<V>> informable) {
+        return new ForkJoinQueutureTask<V>(informable, Queues.<V> newLinkedBlockingQueue());
+    }
+
+    @Override
+    public <V> Queuture<V> submit(final Informable<QueutureBox<V>> informable) {
+        Preconditions.checkNotNull(informable, "informable must be specified");
+
+        RunnableQueuture<V> queuture = this.newTaskFor(informable);
+        ForkJoinTask<?> task = queuture instanceof ForkJoinQueutureTask ? ((ForkJoinQueutureTask<V>) queuture).asForkJoinTask() : ForkJoinTask.adapt(queuture);
+
+        Thread current = Thread.currentThread();
+        if (current instanceof ForkJoinWorkerThread && ((ForkJoinWorkerThread) current).getPool() == this.pool && !this.pool.isShutdown())
+            task.fork();
+        else
+            this.pool.execute(task);
+        return queuture;
+    }
+
+}
@@ -0,0 +1,150 @@
+package com.invectorate.open.queutures;
+
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * A {@link QueutureTask} that cooperates with the {@link ForkJoinPool} it runs in.
+ * <p>
+ * When a worker thread of a {@link ForkJoinPool} waits for a result from this task, the wait is first used to help: if
+ * the task has been forked onto the waiting worker's own deque and has not yet been started, the worker unforks it and
+ * runs the computation itself, so the results are produced and consumed on the same thread. Otherwise the wait is
+ * performed as a {@link ForkJoinPool.ManagedBlocker}, which allows the pool to compensate for the blocked worker
+ * instead of losing parallelism.
+ * <p>
+ * Inline execution is only attempted if the queue is unbounded, as a bounded queue could fill up with no other thread
+ * to drain it.
+ * 
+ * @see ForkJoinQueutureExecutorService
+ * 
+ * @author Noah Fontes <nfontes@invectorate.com>
+ * 
+ * @param <V>
+ *            The type of object being generated by the computation.
+ */
+public class ForkJoinQueutureTask<V> extends QueutureTask<V> {
+
+    private final ForkJoinTask<?> forkJoinTask;
+    private final boolean inlineable;
+
+    /**
+     * Create a new {@code ForkJoinQueutureTask} that will execute the given {@link Informable} as its computation,
+     * passing results back to this class using the given {@link BlockingQueue}.
+     * 
+     * @param informable
+     *            The computation to execute.
+     * @param queue
+     *            The queue to use to pass results to this class.
+     * 
+     * @see QueutureTask#QueutureTask(Informable, BlockingQueue)
+     */
+    public ForkJoinQueutureTask(final Informable<QueutureBox<V>> informable, final BlockingQueue<V> queue) {
+        super(informable, queue);
+
+        this.forkJoinTask = ForkJoinTask.adapt(this);
+        this.inlineable = queue.remainingCapacity() == Integer.MAX_VALUE;
+    }
+
+    /**
+     * Returns the {@link ForkJoinTask} that runs this task. Forking or executing the returned task is equivalent to
+     * executing this task, but allows a waiting worker to reclaim it.
+     */
+    public ForkJoinTask<?> asForkJoinTask() {
+        return this.forkJoinTask;
+    }
+
+    @Override
+    public V next() throws InterruptedException, ExecutionException {
+        if (!this.prepareToWait())
+            return super.next();
+
+        NextBlocker blocker = new NextBlocker(-1L);
+        ForkJoinPool.managedBlock(blocker);
+        return blocker.get();
+    }
+
+    @Override
+    public V next(final long timeout, final TimeUnit unit) throws InterruptedException, ExecutionException, TimeoutException {
+        if (!this.prepareToWait())
+            return super.next(timeout, unit);
+
+        NextBlocker blocker = new NextBlocker(unit.toNanos(timeout));
+        ForkJoinPool.managedBlock(blocker);
+        return blocker.getOrTimeout();
+    }
+
+    /**
+     * Determines whether the current thread needs a managed wait, running the computation in the current thread first if
+     * it is possible to do so.
+     * 
+     * @return {@code true} if the current thread is a fork/join worker that would block waiting for a result.
+     */
+    private boolean prepareToWait() {
+        if (!(Thread.currentThread() instanceof ForkJoinWorkerThread))
+            return false;
+        if (this.isNextAvailable())
+            return false;
+        if (this.inlineable && this.forkJoinTask.tryUnfork()) {
+            this.forkJoinTask.invoke();
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Performs a single call to {@link QueutureTask#next()} on behalf of {@link ForkJoinPool#managedBlock}.
+     */
+    private final class NextBlocker implements ForkJoinPool.ManagedBlocker {
+
+        private final long nanosTimeout;
+
+        private boolean released = false;
+        private V result;
+        private ExecutionException exception;
+        private TimeoutException timeout;
+
+        NextBlocker(final long nanosTimeout) {
+            this.nanosTimeout = nanosTimeout;
+        }
+
+        @Override
+        public boolean block() throws InterruptedException {
+            try {
+                if (this.nanosTimeout < 0)
+                    this.result = ForkJoinQueutureTask.super.next();
+                else
+                    this.result = ForkJoinQueutureTask.super.next(this.nanosTimeout, TimeUnit.NANOSECONDS);
+            } catch (ExecutionException ee) {
+                this.exception = ee;
+            } catch (TimeoutException te) {
+                this.timeout = te;
+            }
+            this.released = true;
+            return true;
+        }
+
+        @Override
+        public boolean isReleasable() {
+            return this.released;
+        }
+
+        V get() throws ExecutionException {
+            if (this.exception != null)
+                throw this.exception;
+            return this.result;
+        }
+
+        V getOrTimeout() throws ExecutionException, TimeoutException {
+            if (this.timeout != null)
+                throw this.timeout;
+            return this.get();
+        }
+
+    }
+
+}
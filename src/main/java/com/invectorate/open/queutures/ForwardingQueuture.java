@@ -0,0 +1,51 @@
+package com.invectorate.open.queutures;
+
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import com.google.common.collect.ForwardingObject;
+
+/**
+ * A {@link Queuture} which forwards all its method calls to another queuture. Subclasses should override one or more
+ * methods to modify the behavior of the backing queuture as desired per the decorator pattern.
+ * 
+ * @author Noah Fontes <nfontes@invectorate.com>
+ * 
+ * @param <V>
+ *            The type of object being generated by the computation.
+ */
+public abstract class ForwardingQueuture<V> extends ForwardingObject implements Queuture<V> {
+
+    /** Constructor for use by subclasses. */
+    protected ForwardingQueuture() {}
+
+    @Override
+    protected abstract Queuture<V> delegate();
+
+    @Override
+    public boolean cancel(final boolean mayInterruptIfRunning) {
+        return this.delegate().cancel(mayInterruptIfRunning);
+    }
+
+    @Override
+    public boolean isCancelled() {
+        return this.delegate().isCancelled();
+    }
+
+    @Override
+    public boolean isDone() {
+        return this.delegate().isDone();
+    }
+
+    @Override
+    public V next() throws InterruptedException, ExecutionException {
+        return this.delegate().next();
+    }
+
+    @Override
+    public V next(final long timeout, final TimeUnit unit) throws TimeoutException, InterruptedException, ExecutionException {
+        return this.delegate().next(timeout, unit);
+    }
+
+}
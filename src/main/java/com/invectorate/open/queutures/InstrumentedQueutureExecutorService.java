@@ -0,0 +1,45 @@
+package com.invectorate.open.queutures;
+
+import java.util.concurrent.ExecutorService;
+
+import com.google.common.collect.Queues;
+
+/**
+ * A {@link QueutureExecutorService} that measures how long results wait to be retrieved across all of its queutures.
+ * <p>
+ * Every queuture submitted is an {@link InstrumentedQueutureTask}, which records waiting times into its own histogram
+ * as well as into the histogram returned by {@link #getLatencyHistogram()}.
+ * 
+ * @author Noah Fontes <nfontes@invectorate.com>
+ */
+public class InstrumentedQueutureExecutorService extends DelegatedQueutureExecutorService {
+
+    private final LatencyHistogram histogram = new LatencyHistogram();
+
+    /**
+     * Create a new instrumented executor service.
+     * 
+     * @param delegate
+     *            The executor service to delegate all executions to.
+     */
+    public InstrumentedQueutureExecutorService(final ExecutorService delegate) {
+        super(delegate);
+    }
+
+    /**
+     * Returns the histogram of how long results of all queutures submitted to this executor service have waited to be
+     * retrieved, in nanoseconds.
+     */
+    public LatencyHistogram getLatencyHistogram() {
+        return this.histogram;
+    }
+
+    /**
+     * Create a new {@link InstrumentedQueutureTask} using an unbounded {@link java.util.concurrent.LinkedBlockingQueue}.
+     */
+    @Override
+    protected <V> RunnableQueuture<V> newTaskFor(final Informable<QueutureBox<V>> informable) {
+        return new InstrumentedQueutureTask<V>(informable, Queues.<V> newLinkedBlockingQueue(), this.histogram);
+    }
+
+}
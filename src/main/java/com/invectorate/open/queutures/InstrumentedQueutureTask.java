@@ -0,0 +1,69 @@
+package com.invectorate.open.queutures;
+
+import java.util.concurrent.BlockingQueue;
+
+import com.google.common.base.Preconditions;
+import com.google.common.collect.ImmutableList;
+
+/**
+ * A {@link QueutureTask} that measures how long each result waits between being put into the {@link QueutureBox} and
+ * being retrieved by a consumer.
+ * <p>
+ * Waiting times are recorded into a {@link LatencyHistogram} belonging to this task, available from
+ * {@link #getLatencyHistogram()}, and optionally into a histogram shared with other tasks. Results discarded by
+ * cancellation or failure are not recorded. See {@link TimestampingBlockingQueue} for the accuracy of the
+ * measurements when several threads put results into the same box.
+ * 
+ * @see InstrumentedQueutureExecutorService
+ * 
+ * @author Noah Fontes <nfontes@invectorate.com>
+ * 
+ * @param <V>
+ *            The type of object being generated by the computation.
+ */
+public class InstrumentedQueutureTask<V> extends QueutureTask<V> {
+
+    private final LatencyHistogram histogram;
+
+    /**
+     * Create a new {@code InstrumentedQueutureTask} that will execute the given {@link Informable} as its
+     * computation, passing results back to this class using the given first-in, first-out {@link BlockingQueue}.
+     * 
+     * @param informable
+     *            The computation to execute.
+     * @param queue
+     *            The queue to use to pass results to this class.
+     */
+    public InstrumentedQueutureTask(final Informable<QueutureBox<V>> informable, final BlockingQueue<V> queue) {
+        this(informable, queue, new LatencyHistogram(), ImmutableList.<LatencyHistogram> of());
+    }
+
+    /**
+     * Create a new {@code InstrumentedQueutureTask} that will execute the given {@link Informable} as its
+     * computation, passing results back to this class using the given first-in, first-out {@link BlockingQueue}, and
+     * additionally recording waiting times into the given histogram.
+     * 
+     * @param informable
+     *            The computation to execute.
+     * @param queue
+     *            The queue to use to pass results to this class.
+     * @param shared
+     *            A histogram, typically shared with other tasks, to record waiting times into.
+     */
+    public InstrumentedQueutureTask(final Informable<QueutureBox<V>> informable, final BlockingQueue<V> queue, final LatencyHistogram shared) {
+        this(informable, queue, new LatencyHistogram(), ImmutableList.of(Preconditions.checkNotNull(shared, "histogram must be specified")));
+    }
+
+    private InstrumentedQueutureTask(final Informable<QueutureBox<V>> informable, final BlockingQueue<V> queue, final LatencyHistogram histogram, final ImmutableList<LatencyHistogram> shared) {
+        super(informable, new TimestampingBlockingQueue<V>(queue, ImmutableList.<LatencyHistogram> builder().add(histogram).addAll(shared).build()));
+        this.histogram = histogram;
+    }
+
+    /**
+     * Returns the histogram of how long results of this task have waited to be retrieved, in nanoseconds.
+     */
+    public LatencyHistogram getLatencyHistogram() {
+        return this.histogram;
+    }
+
+}
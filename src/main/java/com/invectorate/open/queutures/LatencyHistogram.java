@@ -0,0 +1,189 @@
+package com.invectorate.open.queutures;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import com.google.common.base.Preconditions;
+
+/**
+ * A lock-free histogram of durations with bounded relative error.
+ * <p>
+ * Durations are recorded in nanoseconds into log-linear buckets: every power of two is divided into 32 equally sized
+ * buckets, so any recorded value is reported to within about 3% of its true value, from one nanosecond up to
+ * {@link Long#MAX_VALUE} nanoseconds, in a fixed-size array of counters. Recording a value is a single atomic increment
+ * and never allocates, so a histogram may be shared by any number of threads.
+ * <p>
+ * The histogram can be read in two ways. {@link #snapshot()} returns every value recorded since the histogram was
+ * created, while {@link #intervalSnapshot()} returns every value recorded since the previous interval snapshot and
+ * starts a new interval. A value recorded concurrently with taking an interval snapshot appears in exactly one
+ * interval.
+ * 
+ * @author Noah Fontes <nfontes@invectorate.com>
+ */
+public final class LatencyHistogram {
+
+    /** The base-two logarithm of the number of buckets per power of two. */
+    private static final int SUB_BUCKET_BITS = 5;
+    private static final int SUB_BUCKET_COUNT = 1 << SUB_BUCKET_BITS;
+    private static final int BUCKET_COUNT = LatencyHistogram.indexOf(Long.MAX_VALUE) + 1;
+
+    /** Counts since creation, less anything moved to {@link #intervalCounts}. */
+    private final AtomicLongArray counts = new AtomicLongArray(LatencyHistogram.BUCKET_COUNT);
+    /**
+     * Counts from earlier intervals, folded in when an interval snapshot is taken; allocated by the first interval
+     * snapshot, and guarded by this object.
+     */
+    private long[] intervalCounts = null;
+
+    /**
+     * Create a new, empty histogram.
+     */
+    public LatencyHistogram() {}
+
+    /**
+     * Records the given duration.
+     * 
+     * @param duration
+     *            The duration to record; negative durations are recorded as zero.
+     * @param unit
+     *            The unit of the duration.
+     */
+    public void record(final long duration, final TimeUnit unit) {
+        this.recordNanos(unit.toNanos(duration));
+    }
+
+    /**
+     * Records the given duration, in nanoseconds.
+     * 
+     * @param nanos
+     *            The duration to record; negative durations are recorded as zero.
+     */
+    public void recordNanos(final long nanos) {
+        this.counts.incrementAndGet(LatencyHistogram.indexOf(Math.max(0, nanos)));
+    }
+
+    /**
+     * Returns a snapshot of every duration recorded since this histogram was created.
+     */
+    public synchronized Snapshot snapshot() {
+        long[] copy = new long[LatencyHistogram.BUCKET_COUNT];
+        for (int i = 0; i < copy.length; i++)
+            copy[i] = (this.intervalCounts == null ? 0L : this.intervalCounts[i]) + this.counts.get(i);
+        return new Snapshot(copy);
+    }
+
+    /**
+     * Returns a snapshot of every duration recorded since the last call to this method (or since this histogram was
+     * created, if this method has not been called), and begins a new interval.
+     */
+    public synchronized Snapshot intervalSnapshot() {
+        if (this.intervalCounts == null)
+            this.intervalCounts = new long[LatencyHistogram.BUCKET_COUNT];
+
+        long[] copy = new long[LatencyHistogram.BUCKET_COUNT];
+        for (int i = 0; i < copy.length; i++) {
+            copy[i] = this.counts.getAndSet(i, 0);
+            this.intervalCounts[i] += copy[i];
+        }
+        return new Snapshot(copy);
+    }
+
+    static int indexOf(final long nanos) {
+        int shift = Math.max(0, 63 - Long.numberOfLeadingZeros(nanos) - LatencyHistogram.SUB_BUCKET_BITS);
+        return LatencyHistogram.SUB_BUCKET_COUNT * shift + (int) (nanos >>> shift);
+    }
+
+    static long lowestValueAt(final int index) {
+        int shift = Math.max(0, index / LatencyHistogram.SUB_BUCKET_COUNT - 1);
+        return (long) (index - LatencyHistogram.SUB_BUCKET_COUNT * shift) << shift;
+    }
+
+    static long highestValueAt(final int index) {
+        int shift = Math.max(0, index / LatencyHistogram.SUB_BUCKET_COUNT - 1);
+        return LatencyHistogram.lowestValueAt(index) + ((1L << shift) - 1);
+    }
+
+    /**
+     * An immutable view of the durations recorded by a {@link LatencyHistogram}.
+     * <p>
+     * Values are reported as the highest value that falls in the same bucket as the recorded durations, so reported
+     * values never understate the durations they represent.
+     */
+    public static final class Snapshot {
+
+        private final long[] counts;
+        private final long totalCount;
+
+        Snapshot(final long[] counts) {
+            this.counts = counts;
+
+            long total = 0;
+            for (long count : counts)
+                total += count;
+            this.totalCount = total;
+        }
+
+        /**
+         * Returns the number of durations recorded.
+         */
+        public long getCount() {
+            return this.totalCount;
+        }
+
+        /**
+         * Returns the duration, in nanoseconds, at or below which the given percentage of recorded durations fall, or
+         * zero if no durations were recorded.
+         * 
+         * @param percentile
+         *            The percentile to compute, between 0 and 100 inclusive; for example, 99.9.
+         */
+        public long getValueAtPercentile(final double percentile) {
+            Preconditions.checkArgument(percentile >= 0.0 && percentile <= 100.0, "percentile must be between 0 and 100");
+
+            if (this.totalCount == 0)
+                return 0;
+
+            long target = Math.max(1, (long) Math.ceil(percentile / 100.0 * this.totalCount));
+            long seen = 0;
+            for (int i = 0; i < this.counts.length; i++) {
+                seen += this.counts[i];
+                if (seen >= target)
+                    return LatencyHistogram.highestValueAt(i);
+            }
+            throw new AssertionError();
+        }
+
+        /**
+         * Returns the largest duration recorded, in nanoseconds, or zero if no durations were recorded.
+         */
+        public long getMax() {
+            for (int i = this.counts.length - 1; i >= 0; i--) {
+                if (this.counts[i] != 0)
+                    return LatencyHistogram.highestValueAt(i);
+            }
+            return 0;
+        }
+
+        /**
+         * Returns the mean of the recorded durations, in nanoseconds, or zero if no durations were recorded.
+         */
+        public double getMean() {
+            if (this.totalCount == 0)
+                return 0.0;
+
+            double sum = 0.0;
+            for (int i = 0; i < this.counts.length; i++) {
+                if (this.counts[i] != 0)
+                    sum += this.counts[i] * ((LatencyHistogram.lowestValueAt(i) + (double) LatencyHistogram.highestValueAt(i)) / 2.0);
+            }
+            return sum / this.totalCount;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("count=%d, p50=%dns, p99=%dns, p99.9=%dns, max=%dns", this.totalCount, this.getValueAtPercentile(50.0), this.getValueAtPercentile(99.0), this.getValueAtPercentile(99.9), this.getMax());
+        }
+
+    }
+
+}
@@ -0,0 +1,169 @@
+package com.invectorate.open.queutures;
+
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A {@link Queuture} that reads at most a fixed number of results from another queuture, then cancels it.
+ * 
+ * @see Queutures#limit(Queuture, long)
+ * 
+ * @author Noah Fontes <nfontes@invectorate.com>
+ * 
+ * @param <V>
+ *            The type of object being generated by the computation.
+ */
+final class LimitedQueuture<V> extends ForwardingQueuture<V> {
+
+    private final Queuture<V> delegate;
+    private final long limit;
+
+    /**
+     * The number of results that consumers may still start to read. Also the monitor on which consumers wait for a
+     * read in progress to give its permit back.
+     */
+    private final AtomicLong remaining;
+    /** The number of results that have been read. */
+    private final AtomicLong delivered = new AtomicLong();
+
+    private volatile boolean exhausted = false;
+    private volatile boolean cancelled = false;
+
+    LimitedQueuture(final Queuture<V> delegate, final long limit) {
+        this.delegate = delegate;
+        this.limit = limit;
+        this.remaining = new AtomicLong(limit);
+
+        if (limit == 0)
+            this.exhaust();
+    }
+
+    @Override
+    protected Queuture<V> delegate() {
+        return this.delegate;
+    }
+
+    @Override
+    public boolean cancel(final boolean mayInterruptIfRunning) {
+        if (this.exhausted || !this.delegate.cancel(mayInterruptIfRunning))
+            return false;
+        this.cancelled = true;
+        return true;
+    }
+
+    @Override
+    public boolean isCancelled() {
+        return this.cancelled || (!this.exhausted && this.delegate.isCancelled());
+    }
+
+    @Override
+    public boolean isDone() {
+        return this.exhausted || this.delegate.isDone();
+    }
+
+    @Override
+    public V next() throws InterruptedException, ExecutionException {
+        try {
+            if (!this.acquire(false, 0L))
+                return null;
+        } catch (TimeoutException te) {
+            throw new AssertionError(te);
+        }
+
+        boolean read = false;
+        try {
+            V next = this.delegate.next();
+            read = next != null;
+            return this.delivered(next);
+        } finally {
+            if (!read)
+                this.release();
+        }
+    }
+
+    @Override
+    public V next(final long timeout, final TimeUnit unit) throws TimeoutException, InterruptedException, ExecutionException {
+        long deadline = System.nanoTime() + unit.toNanos(timeout);
+        if (!this.acquire(true, deadline))
+            return null;
+
+        boolean read = false;
+        try {
+            V next = this.delegate.next(deadline - System.nanoTime(), TimeUnit.NANOSECONDS);
+            read = next != null;
+            return this.delivered(next);
+        } finally {
+            if (!read)
+                this.release();
+        }
+    }
+
+    /**
+     * Takes a permit to read a result, waiting while every remaining permit is held by a read in progress, since any of
+     * those reads may fail or find no result and give its permit back.
+     * 
+     * @return {@code false} if the limit has been reached.
+     */
+    private boolean acquire(final boolean timed, final long deadline) throws TimeoutException, InterruptedException {
+        if (this.tryAcquire())
+            return true;
+
+        synchronized (this.remaining) {
+            while (!this.tryAcquire()) {
+                if (this.exhausted)
+                    return false;
+                if (!timed) {
+                    this.remaining.wait();
+                } else {
+                    long nanos = deadline - System.nanoTime();
+                    if (nanos <= 0L)
+                        throw new TimeoutException();
+                    TimeUnit.NANOSECONDS.timedWait(this.remaining, nanos);
+                }
+            }
+        }
+        return true;
+    }
+
+    private boolean tryAcquire() {
+        for (;;) {
+            long r = this.remaining.get();
+            if (r == 0L)
+                return false;
+            if (this.remaining.compareAndSet(r, r - 1))
+                return true;
+        }
+    }
+
+    /**
+     * Gives back a permit after a read that failed or found no result, waking up anyone waiting for it.
+     */
+    private void release() {
+        this.remaining.incrementAndGet();
+        synchronized (this.remaining) {
+            this.remaining.notifyAll();
+        }
+    }
+
+    /**
+     * Counts a result as delivered, cancelling the source once the last permitted result has been read. The source is
+     * not cancelled as soon as the last read begins, because other consumers may still be waiting for results they are
+     * entitled to.
+     */
+    private V delivered(final V next) {
+        if (next != null && this.delivered.incrementAndGet() == this.limit)
+            this.exhaust();
+        return next;
+    }
+
+    private void exhaust() {
+        this.exhausted = true;
+        synchronized (this.remaining) {
+            this.remaining.notifyAll();
+        }
+        this.delegate.cancel(true);
+    }
+
+}
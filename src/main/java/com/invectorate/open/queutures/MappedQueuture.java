@@ -0,0 +1,98 @@
+package com.invectorate.open.queutures;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import com.google.common.base.Preconditions;
+
+/**
+ * A {@link Queuture} that reads results from a memory-mapped file written by a {@link MappedQueutureBox}, possibly in
+ * another process on the same host.
+ * <p>
+ * Any number of consumers, in any number of processes, may attach to the same file; each result is delivered to
+ * exactly one of them. Reading an available result involves no system calls. While no result is available, consumers
+ * spin briefly and then poll at short intervals, since there is no way to be woken up by another process without one.
+ * <p>
+ * If the computation fails, {@link #next()} throws an {@link ExecutionException} whose message describes the failure;
+ * the original exception remains in the producing process. {@link #cancel(boolean)} tells the producer to stop, which it
+ * will notice the next time it puts a result; it cannot interrupt a thread in another process. As with a
+ * {@link QueutureTask}, results still held in the file are not delivered once the computation has failed or been
+ * cancelled.
+ * 
+ * @author Noah Fontes <nfontes@invectorate.com>
+ * 
+ * @param <V>
+ *            The type of object being generated by the computation.
+ */
+public final class MappedQueuture<V> implements Queuture<V>, Closeable {
+
+    private final MappedRing ring;
+    private final Serializer<V> serializer;
+
+    private MappedQueuture(final MappedRing ring, final Serializer<V> serializer) {
+        this.ring = ring;
+        this.serializer = serializer;
+    }
+
+    /**
+     * Attach to the ring in the given file.
+     * 
+     * @param file
+     *            The file, created by {@link MappedQueutureBox#create(Path, int, int, Serializer)}.
+     * @param serializer
+     *            The serializer used to read results.
+     * 
+     * @return A queuture for the results in the ring.
+     * 
+     * @throws IOException
+     *             If the file cannot be mapped, or has not been initialized by a producer.
+     */
+    public static <V> MappedQueuture<V> open(final Path file, final Serializer<V> serializer) throws IOException {
+        Preconditions.checkNotNull(file, "file must be specified");
+        Preconditions.checkNotNull(serializer, "serializer must be specified");
+
+        return new MappedQueuture<V>(MappedRing.open(file), serializer);
+    }
+
+    @Override
+    public boolean cancel(final boolean mayInterruptIfRunning) {
+        return this.ring.transition(MappedRing.CANCELLED);
+    }
+
+    @Override
+    public boolean isCancelled() {
+        return this.ring.getState() == MappedRing.CANCELLED;
+    }
+
+    @Override
+    public boolean isDone() {
+        return this.ring.getState() != MappedRing.RUNNING;
+    }
+
+    @Override
+    public V next() throws InterruptedException, ExecutionException {
+        try {
+            return this.ring.take(this.serializer, -1L);
+        } catch (TimeoutException te) {
+            throw new AssertionError(te);
+        }
+    }
+
+    @Override
+    public V next(final long timeout, final TimeUnit unit) throws TimeoutException, InterruptedException, ExecutionException {
+        return this.ring.take(this.serializer, Math.max(0L, unit.toNanos(timeout)));
+    }
+
+    /**
+     * Closes the file. The mapping itself is released when this object is garbage collected.
+     */
+    @Override
+    public void close() throws IOException {
+        this.ring.close();
+    }
+
+}
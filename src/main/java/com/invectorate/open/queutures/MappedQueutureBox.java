@@ -0,0 +1,145 @@
+package com.invectorate.open.queutures;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import com.google.common.base.Preconditions;
+
+/**
+ * A {@link QueutureBox} that publishes results to a memory-mapped file, to be read by a {@link MappedQueuture} in the
+ * same or another process on the same host.
+ * <p>
+ * Results are serialized directly into a fixed number of fixed-size slots in the file. Putting a result waits only if
+ * every slot holds a result that no consumer has read yet; otherwise it involves no system calls, and neither does
+ * reading it on the other side. The file is created (or truncated) by {@link #create(Path, int, int, Serializer)}, and
+ * consumers attach to it by path.
+ * <p>
+ * A ring has exactly one producer. Puts made by several threads are serialized, but there is no way to share a ring
+ * between producers in different processes.
+ * 
+ * <pre>
+ * try (MappedQueutureBox&lt;String&gt; box = MappedQueutureBox.create(path, 1024, 4096, serializer)) {
+ *     box.run(informable);
+ * }
+ * </pre>
+ * 
+ * @author Noah Fontes <nfontes@invectorate.com>
+ * 
+ * @param <V>
+ *            The type of object being generated by the computation.
+ */
+public final class MappedQueutureBox<V> implements QueutureBox<V>, Closeable {
+
+    private final MappedRing ring;
+    private final Serializer<V> serializer;
+
+    /** The sequence number of the next result to put; guarded by this object. */
+    private long sequence = 0L;
+
+    private MappedQueutureBox(final MappedRing ring, final Serializer<V> serializer) {
+        this.ring = ring;
+        this.serializer = serializer;
+    }
+
+    /**
+     * Create a new ring in the given file, replacing any existing contents.
+     * 
+     * @param file
+     *            The file to create.
+     * @param capacity
+     *            The number of results the ring can hold.
+     * @param maxResultSize
+     *            The maximum size of a serialized result, in bytes.
+     * @param serializer
+     *            The serializer used to write results.
+     * 
+     * @return A box for the new ring.
+     * 
+     * @throws IOException
+     *             If the file cannot be created or mapped.
+     */
+    public static <V> MappedQueutureBox<V> create(final Path file, final int capacity, final int maxResultSize, final Serializer<V> serializer) throws IOException {
+        Preconditions.checkNotNull(file, "file must be specified");
+        Preconditions.checkNotNull(serializer, "serializer must be specified");
+
+        return new MappedQueutureBox<V>(MappedRing.create(file, capacity, maxResultSize), serializer);
+    }
+
+    /**
+     * Runs the given computation, putting its results into this box, and then marks the computation as complete. If the
+     * computation throws an exception, consumers are told that it failed, with the exception's description, and the
+     * exception is rethrown.
+     * 
+     * @param informable
+     *            The computation to run.
+     */
+    public void run(final Informable<QueutureBox<V>> informable) {
+        Preconditions.checkNotNull(informable, "informable must be specified");
+
+        try {
+            informable.inform(this);
+        } catch (RuntimeException | Error e) {
+            this.ring.fail(e.toString());
+            throw e;
+        }
+        this.ring.transition(MappedRing.RAN);
+    }
+
+    @Override
+    public boolean isCancelled() {
+        return this.ring.getState() == MappedRing.CANCELLED;
+    }
+
+    /**
+     * {@inheritDoc}
+     * 
+     * @throws java.nio.BufferOverflowException
+     *             If the serialized object is larger than the maximum result size of the ring.
+     */
+    @Override
+    public boolean put(final V object) throws InterruptedException {
+        try {
+            return this.put(object, -1L);
+        } catch (TimeoutException te) {
+            throw new AssertionError(te);
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     * 
+     * @throws java.nio.BufferOverflowException
+     *             If the serialized object is larger than the maximum result size of the ring.
+     */
+    @Override
+    public boolean put(final V object, final long timeout, final TimeUnit unit) throws TimeoutException, InterruptedException {
+        return this.put(object, Math.max(0L, unit.toNanos(timeout)));
+    }
+
+    private synchronized boolean put(final V object, final long nanosTimeout) throws TimeoutException, InterruptedException {
+        Preconditions.checkNotNull(object, "object must be specified");
+
+        ByteBuffer target = this.ring.claimForWrite(this.sequence, nanosTimeout);
+        if (target == null)
+            return false;
+        this.serializer.serialize(object, target);
+        this.ring.publish(this.sequence++, target.position());
+        return true;
+    }
+
+    /**
+     * Closes the file. If the computation has not been marked complete, consumers are told that it failed.
+     * <p>
+     * The mapping itself is released when this object is garbage collected.
+     */
+    @Override
+    public void close() throws IOException {
+        this.ring.fail("producer closed before the computation completed");
+        this.ring.close();
+    }
+
+}
@@ -0,0 +1,286 @@
+package com.invectorate.open.queutures;
+
+import java.io.IOException;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.locks.LockSupport;
+
+import com.google.common.base.Preconditions;
+
+/**
+ * A ring buffer of fixed-size slots in a memory-mapped file, shared by one producer and any number of consumers, which
+ * may be in different processes.
+ * <p>
+ * The file consists of a header followed by the slots:
+ * <ul>
+ * <li>The header holds a magic number and the geometry of the ring, each on its own cache line: the number of results
+ * published, the number of results claimed by consumers, and the state of the computation. A failure message follows.
+ * </li>
+ * <li>Each slot starts with an 8-byte sequence flag and a 4-byte length, followed by the serialized result. For the
+ * result with sequence number <i>s</i>, the flag is <i>2s + 1</i> once the result is published and <i>2s + 2</i> once a
+ * consumer has finished reading it, at which point the producer may reuse the slot.</li>
+ * </ul>
+ * All coordination uses ordered or atomic memory accesses on the mapped memory itself, so neither side makes a system
+ * call unless it has to wait. Waiting spins briefly, then yields, then sleeps for short intervals.
+ * 
+ * @author Noah Fontes <nfontes@invectorate.com>
+ */
+final class MappedRing {
+
+    private static final VarHandle LONGS = MethodHandles.byteBufferViewVarHandle(long[].class, ByteOrder.nativeOrder());
+    private static final VarHandle INTS = MethodHandles.byteBufferViewVarHandle(int[].class, ByteOrder.nativeOrder());
+
+    private static final int MAGIC = 0x51554555;
+
+    private static final int MAGIC_OFFSET = 0;
+    private static final int SLOT_COUNT_OFFSET = 4;
+    private static final int SLOT_SIZE_OFFSET = 8;
+    private static final int PUBLISHED_OFFSET = 64;
+    private static final int CLAIMED_OFFSET = 128;
+    private static final int STATE_OFFSET = 192;
+    private static final int FAILURE_LENGTH_OFFSET = 196;
+    private static final int FAILURE_OFFSET = 256;
+    private static final int FAILURE_CAPACITY = 256;
+    private static final int HEADER_SIZE = MappedRing.FAILURE_OFFSET + MappedRing.FAILURE_CAPACITY;
+
+    private static final int SLOT_HEADER_SIZE = 16;
+
+    static final int RUNNING = 0;
+    static final int RAN = 1;
+    static final int FAILED = 2;
+    static final int CANCELLED = 3;
+
+    private static final int SPINS = 100;
+    private static final int YIELDS = 100;
+    private static final long PARK_NANOS = TimeUnit.MICROSECONDS.toNanos(50);
+
+    private final FileChannel channel;
+    private final MappedByteBuffer buffer;
+    private final int slotCount;
+    private final int slotSize;
+
+    private MappedRing(final FileChannel channel, final MappedByteBuffer buffer, final int slotCount, final int slotSize) {
+        this.channel = channel;
+        this.buffer = buffer;
+        this.slotCount = slotCount;
+        this.slotSize = slotSize;
+    }
+
+    static MappedRing create(final Path file, final int slotCount, final int maxResultSize) throws IOException {
+        Preconditions.checkArgument(slotCount > 0, "slotCount must be positive");
+        Preconditions.checkArgument(maxResultSize > 0, "maxResultSize must be positive");
+
+        /* Keep every slot 8-byte aligned so that the flags can be accessed atomically. */
+        long slotSize = (MappedRing.SLOT_HEADER_SIZE + (long) maxResultSize + 7) & ~7L;
+        long size = MappedRing.HEADER_SIZE + slotSize * slotCount;
+        Preconditions.checkArgument(slotSize <= Integer.MAX_VALUE && size <= Integer.MAX_VALUE, "ring is too large to map");
+
+        FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        try {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+            buffer.putInt(MappedRing.SLOT_COUNT_OFFSET, slotCount);
+            buffer.putInt(MappedRing.SLOT_SIZE_OFFSET, (int) slotSize);
+            /* Publish the geometry along with the magic number, so that a consumer never sees one without the other. */
+            MappedRing.INTS.setRelease(buffer, MappedRing.MAGIC_OFFSET, MappedRing.MAGIC);
+            return new MappedRing(channel, buffer, slotCount, (int) slotSize);
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    static MappedRing open(final Path file) throws IOException {
+        FileChannel channel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        try {
+            long size = channel.size();
+            if (size < MappedRing.HEADER_SIZE)
+                throw new IOException(file + " is not an initialized queuture ring");
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+            if ((int) MappedRing.INTS.getAcquire(buffer, MappedRing.MAGIC_OFFSET) != MappedRing.MAGIC)
+                throw new IOException(file + " is not an initialized queuture ring");
+
+            int slotCount = buffer.getInt(MappedRing.SLOT_COUNT_OFFSET);
+            int slotSize = buffer.getInt(MappedRing.SLOT_SIZE_OFFSET);
+            if (MappedRing.HEADER_SIZE + (long) slotSize * slotCount > size)
+                throw new IOException(file + " is truncated");
+            return new MappedRing(channel, buffer, slotCount, slotSize);
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    void close() throws IOException {
+        this.channel.close();
+    }
+
+    int getMaxResultSize() {
+        return this.slotSize - MappedRing.SLOT_HEADER_SIZE;
+    }
+
+    int getState() {
+        return (int) MappedRing.INTS.getAcquire(this.buffer, MappedRing.STATE_OFFSET);
+    }
+
+    boolean transition(final int to) {
+        return MappedRing.INTS.compareAndSet(this.buffer, MappedRing.STATE_OFFSET, MappedRing.RUNNING, to);
+    }
+
+    long getPublished() {
+        return (long) MappedRing.LONGS.getAcquire(this.buffer, MappedRing.PUBLISHED_OFFSET);
+    }
+
+    long getClaimed() {
+        return (long) MappedRing.LONGS.getAcquire(this.buffer, MappedRing.CLAIMED_OFFSET);
+    }
+
+    private int slotOffset(final long sequence) {
+        return MappedRing.HEADER_SIZE + (int) (sequence % this.slotCount) * this.slotSize;
+    }
+
+    private long flag(final int slot) {
+        return (long) MappedRing.LONGS.getAcquire(this.buffer, slot);
+    }
+
+    /**
+     * Records the failure of the computation and marks it failed, unless it has already finished.
+     */
+    boolean fail(final String message) {
+        if (this.getState() != MappedRing.RUNNING)
+            return false;
+
+        byte[] bytes = (message == null ? "" : message).getBytes(StandardCharsets.UTF_8);
+        int length = Math.min(bytes.length, MappedRing.FAILURE_CAPACITY);
+        ByteBuffer target = this.buffer.duplicate();
+        target.position(MappedRing.FAILURE_OFFSET);
+        target.put(bytes, 0, length);
+        this.buffer.putInt(MappedRing.FAILURE_LENGTH_OFFSET, length);
+        return this.transition(MappedRing.FAILED);
+    }
+
+    String getFailure() {
+        byte[] bytes = new byte[this.buffer.getInt(MappedRing.FAILURE_LENGTH_OFFSET)];
+        ByteBuffer source = this.buffer.duplicate();
+        source.position(MappedRing.FAILURE_OFFSET);
+        source.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Waits for the slot for the given sequence number to be free, then returns a buffer for writing its contents.
+     * Must only be called by the producer.
+     * 
+     * @return The buffer, or null if the computation is no longer running.
+     */
+    ByteBuffer claimForWrite(final long sequence, final long nanosTimeout) throws InterruptedException, TimeoutException {
+        int slot = this.slotOffset(sequence);
+        long free = sequence < this.slotCount ? 0L : 2 * (sequence - this.slotCount) + 2;
+
+        Waiter waiter = new Waiter(nanosTimeout);
+        while (this.flag(slot) != free) {
+            if (this.getState() != MappedRing.RUNNING)
+                return null;
+            waiter.await();
+        }
+        if (this.getState() != MappedRing.RUNNING)
+            return null;
+
+        ByteBuffer target = this.buffer.duplicate();
+        target.limit(slot + this.slotSize);
+        target.position(slot + MappedRing.SLOT_HEADER_SIZE);
+        return target.slice();
+    }
+
+    /**
+     * Publishes the result with the given sequence number, of the given length. Must only be called by the producer.
+     */
+    void publish(final long sequence, final int length) {
+        int slot = this.slotOffset(sequence);
+        this.buffer.putInt(slot + 8, length);
+        MappedRing.LONGS.setRelease(this.buffer, slot, 2 * sequence + 1);
+        MappedRing.LONGS.setRelease(this.buffer, MappedRing.PUBLISHED_OFFSET, sequence + 1);
+    }
+
+    /**
+     * Claims the next published result and passes its contents to the given reader.
+     * 
+     * @return The result read, or null if the computation ran to completion and every result has been claimed.
+     */
+    <V> V take(final Serializer<V> serializer, final long nanosTimeout) throws InterruptedException, TimeoutException, ExecutionException {
+        Waiter waiter = new Waiter(nanosTimeout);
+        for (;;) {
+            /* Like a QueutureTask, stop delivering buffered results as soon as the computation is cancelled or fails. */
+            int state = this.getState();
+            if (state == MappedRing.CANCELLED)
+                throw new CancellationException();
+            if (state == MappedRing.FAILED)
+                throw new ExecutionException("computation failed: " + this.getFailure(), null);
+
+            long sequence = this.getClaimed();
+            int slot = this.slotOffset(sequence);
+            if (this.flag(slot) == 2 * sequence + 1) {
+                if (!MappedRing.LONGS.compareAndSet(this.buffer, MappedRing.CLAIMED_OFFSET, sequence, sequence + 1))
+                    continue;
+
+                try {
+                    ByteBuffer source = this.buffer.duplicate();
+                    source.position(slot + MappedRing.SLOT_HEADER_SIZE);
+                    source.limit(slot + MappedRing.SLOT_HEADER_SIZE + this.buffer.getInt(slot + 8));
+                    return serializer.deserialize(source.slice().asReadOnlyBuffer());
+                } finally {
+                    MappedRing.LONGS.setRelease(this.buffer, slot, 2 * sequence + 2);
+                }
+            }
+
+            /* The state is set after the last result is published, so if nothing is left now, nothing ever will be. */
+            if (state == MappedRing.RAN && sequence >= this.getPublished())
+                return null;
+            if (state == MappedRing.RUNNING)
+                waiter.await();
+        }
+    }
+
+    /**
+     * Waits without making system calls at first, backing off to short sleeps.
+     */
+    private static final class Waiter {
+
+        private final long deadline;
+        private final boolean timed;
+        private int attempts = 0;
+
+        Waiter(final long nanosTimeout) {
+            this.timed = nanosTimeout >= 0;
+            this.deadline = System.nanoTime() + Math.max(0L, nanosTimeout);
+        }
+
+        void await() throws InterruptedException, TimeoutException {
+            if (this.timed && System.nanoTime() - this.deadline >= 0)
+                throw new TimeoutException();
+
+            int n = this.attempts++;
+            if (n < MappedRing.SPINS) {
+                Thread.onSpinWait();
+            } else if (n < MappedRing.SPINS + MappedRing.YIELDS) {
+                Thread.yield();
+            } else {
+                LockSupport.parkNanos(this, MappedRing.PARK_NANOS);
+                if (Thread.interrupted())
+                    throw new InterruptedException();
+            }
+        }
+
+    }
+
+}
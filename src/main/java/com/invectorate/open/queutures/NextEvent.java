@@ -0,0 +1,37 @@
+package com.invectorate.open.queutures;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Threshold;
+
+/**
+ * A Flight Recorder event spanning a call to {@link Queuture#next()} that waits for a result to become available.
+ * 
+ * @author Noah Fontes <nfontes@invectorate.com>
+ */
+@Name("com.invectorate.open.queutures.Next")
+@Label("Queuture Next")
+@Category("Queutures")
+@Description("A consumer waiting for the next result of a queuture")
+@Threshold("10 ms")
+final class NextEvent extends Event {
+
+    @Label("Task Class")
+    Class<?> taskClass;
+
+    @Label("Timed Out")
+    boolean timedOut;
+
+    void finish(final QueutureTask<?> task, final boolean timedOut) {
+        this.end();
+        if (this.shouldCommit()) {
+            this.taskClass = task.getClass();
+            this.timedOut = timedOut;
+            this.commit();
+        }
+    }
+
+}
@@ -0,0 +1,79 @@
+package com.invectorate.open.queutures;
+
+import java.util.concurrent.BlockingQueue;
+
+import com.google.common.base.Preconditions;
+
+/**
+ * Determines what a {@link QueutureTask} does with a new result when its queue is full.
+ * <p>
+ * By default, a producer that puts a result into a full queue waits for a consumer to make room. For latency-sensitive
+ * producers, the other policies never wait: they discard results instead, keeping the queue (and memory use) at its
+ * bound. Discarded results are counted by {@link QueutureTask#getDroppedCount()}; they are still reported as accepted by
+ * {@link QueutureBox#put(Object)}, since the producer has no reason to stop.
+ * <p>
+ * The non-blocking policies are only meaningful with a bounded queue that can hold at least one element, such as an
+ * {@link java.util.concurrent.ArrayBlockingQueue}.
+ * 
+ * @author Noah Fontes <nfontes@invectorate.com>
+ */
+public final class OverflowPolicy {
+
+    enum Kind {
+        BLOCK, DROP_NEWEST, DROP_OLDEST, SAMPLE;
+    }
+
+    private static final OverflowPolicy BLOCK = new OverflowPolicy(Kind.BLOCK, 0);
+    private static final OverflowPolicy DROP_NEWEST = new OverflowPolicy(Kind.DROP_NEWEST, 0);
+    private static final OverflowPolicy DROP_OLDEST = new OverflowPolicy(Kind.DROP_OLDEST, 0);
+
+    final Kind kind;
+    final int interval;
+
+    private OverflowPolicy(final Kind kind, final int interval) {
+        this.kind = kind;
+        this.interval = interval;
+    }
+
+    /**
+     * Returns a policy under which producers wait for space in the queue, as {@link BlockingQueue#put(Object)} does.
+     * This is the default.
+     */
+    public static OverflowPolicy block() {
+        return OverflowPolicy.BLOCK;
+    }
+
+    /**
+     * Returns a policy under which a result that does not fit in the queue is discarded.
+     */
+    public static OverflowPolicy dropNewest() {
+        return OverflowPolicy.DROP_NEWEST;
+    }
+
+    /**
+     * Returns a policy under which the oldest result in the queue is discarded to make room for a new one.
+     */
+    public static OverflowPolicy dropOldest() {
+        return OverflowPolicy.DROP_OLDEST;
+    }
+
+    /**
+     * Returns a policy under which, while the queue is full, only every {@code interval}th result is kept, replacing
+     * the oldest result in the queue; the rest are discarded. This keeps a consumer that has fallen behind supplied with
+     * a thinned-out but still current view of the results.
+     * 
+     * @param interval
+     *            Keep one of every this many results that do not fit in the queue.
+     */
+    public static OverflowPolicy sample(final int interval) {
+        Preconditions.checkArgument(interval > 0, "interval must be positive");
+
+        return interval == 1 ? OverflowPolicy.DROP_OLDEST : new OverflowPolicy(Kind.SAMPLE, interval);
+    }
+
+    @Override
+    public String toString() {
+        return this.kind == Kind.SAMPLE ? "SAMPLE(" + this.interval + ")" : this.kind.toString();
+    }
+
+}
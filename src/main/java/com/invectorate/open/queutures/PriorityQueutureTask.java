@@ -0,0 +1,51 @@
+package com.invectorate.open.queutures;
+
+import java.util.Comparator;
+
+/**
+ * A {@link QueutureTask} that delivers results in priority order rather than in the order they were generated.
+ * <p>
+ * Each call to {@link #next()} returns the highest-priority result available at the time of the call, where the
+ * highest-priority result is the least one according to the given {@link Comparator}. Results that compare equal are
+ * delivered in the order they were generated.
+ * <p>
+ * Results are stored in a {@link SkipListPriorityBlockingQueue}, so many consumers may read from this task without
+ * contending on a single lock. If a capacity is given, {@link QueutureBox#put(Object)} will block while the task is
+ * holding that many undelivered results.
+ * 
+ * @author Noah Fontes <nfontes@invectorate.com>
+ * 
+ * @param <V>
+ *            The type of object being generated by the computation.
+ */
+public class PriorityQueutureTask<V> extends QueutureTask<V> {
+
+    /**
+     * Create a new {@code PriorityQueutureTask} that will execute the given {@link Informable} as its computation,
+     * holding an unbounded number of results.
+     * 
+     * @param informable
+     *            The computation to execute.
+     * @param comparator
+     *            The comparator used to order results.
+     */
+    public PriorityQueutureTask(final Informable<QueutureBox<V>> informable, final Comparator<? super V> comparator) {
+        super(informable, new SkipListPriorityBlockingQueue<V>(comparator));
+    }
+
+    /**
+     * Create a new {@code PriorityQueutureTask} that will execute the given {@link Informable} as its computation,
+     * holding up to the given number of results.
+     * 
+     * @param informable
+     *            The computation to execute.
+     * @param comparator
+     *            The comparator used to order results.
+     * @param capacity
+     *            The maximum number of undelivered results to hold.
+     */
+    public PriorityQueutureTask(final Informable<QueutureBox<V>> informable, final Comparator<? super V> comparator, final int capacity) {
+        super(informable, new SkipListPriorityBlockingQueue<V>(comparator, capacity));
+    }
+
+}
@@ -12,6 +12,19 @@ import java.util.concurrent.TimeoutException;
  * {@link Queuture} via {@link Queuture#next()}.
  * <p>
  * This object is typically backed by some sort of {@link BlockingQueue}.
+ * <p>
+ * Once the {@link Queuture} has been cancelled, nothing put into the box will ever be read, so a producer should stop
+ * as soon as possible. Long-running producers can poll {@link #isCancelled()} between expensive steps, and every
+ * {@code put} reports whether its object was accepted:
+ * 
+ * <pre>
+ * {@code
+ * while (crawler.hasNext()) {
+ *     if (!box.put(crawler.next()))
+ *         break;
+ * }
+ * }
+ * </pre>
  * 
  * @author Noah Fontes <nfontes@invectorate.com>
  * 
@@ -20,6 +33,16 @@ import java.util.concurrent.TimeoutException;
  */
 public interface QueutureBox<V> {
 
+    /**
+     * Returns {@code true} if the {@link Queuture} this box feeds has been cancelled, in which case any further objects
+     * put into it will be discarded.
+     * <p>
+     * This method is cheap enough to call in a tight loop.
+     * 
+     * @return Whether the consumers of this box have stopped listening.
+     */
+    public boolean isCancelled();
+
     /**
      * Add a new object into this box.
      * <p>
@@ -29,12 +52,16 @@ public interface QueutureBox<V> {
      * @param object
      *            The object to store.
      * 
+     * @return {@code true} if the object was accepted, or {@code false} if it was discarded because the underlying
+     *         {@link Queuture} has been cancelled or is no longer accepting objects. An accepted object is normally
+     *         stored, but may instead be discarded to keep a full queue at its bound; see {@link OverflowPolicy}.
+     * 
      * @throws NullPointerException
      *             If the given object is null.
      * @throws InterruptedException
      *             If the current thread is interrupted while attempting to store data.
      */
-    public void put(V object) throws InterruptedException;
+    public boolean put(V object) throws InterruptedException;
 
     /**
      * Add a new object into this box, failing if it takes longer than the specified timeout.
@@ -49,6 +76,10 @@ public interface QueutureBox<V> {
      * @param unit
      *            The time unit of the {@code timeout} parameter.
      * 
+     * @return {@code true} if the object was accepted, or {@code false} if it was discarded because the underlying
+     *         {@link Queuture} has been cancelled or is no longer accepting objects. An accepted object is normally
+     *         stored, but may instead be discarded to keep a full queue at its bound; see {@link OverflowPolicy}.
+     * 
      * @throws NullPointerException
      *             If the given object is null.
      * @throws TimeoutException
@@ -56,6 +87,6 @@ public interface QueutureBox<V> {
      * @throws InterruptedException
      *             If the current thread is interrupted while attempting to store data.
      */
-    public void put(V object, long timeout, TimeUnit unit) throws TimeoutException, InterruptedException;
+    public boolean put(V object, long timeout, TimeUnit unit) throws TimeoutException, InterruptedException;
 
 }
@@ -0,0 +1,141 @@
+package com.invectorate.open.queutures;
+
+import java.util.List;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Consumer;
+
+import com.google.common.base.Throwables;
+import com.google.common.collect.Lists;
+import com.google.common.util.concurrent.UncheckedExecutionException;
+
+/**
+ * A {@link Spliterator} over the results of a {@link Queuture}.
+ * <p>
+ * Splitting waits for at least one result, then hands off a batch of whatever other results are immediately available,
+ * up to a batch size that grows with every split. The batches are independent of the queuture, so a parallel stream can
+ * process them while this spliterator goes on reading.
+ * <p>
+ * Waiting for a result may block indefinitely. If the waiting thread is interrupted, the interrupt status is restored
+ * and the interruption is rethrown wrapped in a {@link RuntimeException}. If the computation fails, the cause is
+ * rethrown wrapped in an {@link UncheckedExecutionException}.
+ * 
+ * @see Queutures#stream(Queuture)
+ * 
+ * @author Noah Fontes <nfontes@invectorate.com>
+ * 
+ * @param <V>
+ *            The type of object being generated by the computation.
+ */
+final class QueutureSpliterator<V> implements Spliterator<V> {
+
+    private static final int INITIAL_BATCH_SIZE = 16;
+    private static final int MAX_BATCH_SIZE = 1 << 12;
+
+    private static final int CHARACTERISTICS = Spliterator.NONNULL | Spliterator.CONCURRENT;
+
+    private final Queuture<V> queuture;
+    private int batchSize = QueutureSpliterator.INITIAL_BATCH_SIZE;
+    private boolean exhausted = false;
+
+    QueutureSpliterator(final Queuture<V> queuture) {
+        this.queuture = queuture;
+    }
+
+    @Override
+    public boolean tryAdvance(final Consumer<? super V> action) {
+        if (this.exhausted)
+            return false;
+
+        V next = this.next();
+        if (next == null)
+            return false;
+        action.accept(next);
+        return true;
+    }
+
+    @Override
+    public void forEachRemaining(final Consumer<? super V> action) {
+        if (this.exhausted)
+            return;
+
+        V next;
+        while ((next = this.next()) != null)
+            action.accept(next);
+    }
+
+    @Override
+    public Spliterator<V> trySplit() {
+        if (this.exhausted)
+            return null;
+
+        List<V> batch = this.nextBatch(this.batchSize);
+        if (batch.isEmpty())
+            return null;
+
+        this.batchSize = Math.min(this.batchSize << 1, QueutureSpliterator.MAX_BATCH_SIZE);
+        return Spliterators.spliterator(batch, QueutureSpliterator.CHARACTERISTICS & ~Spliterator.CONCURRENT);
+    }
+
+    @Override
+    public long estimateSize() {
+        return this.exhausted ? 0L : Long.MAX_VALUE;
+    }
+
+    @Override
+    public int characteristics() {
+        return QueutureSpliterator.CHARACTERISTICS;
+    }
+
+    private V next() {
+        try {
+            V next = this.queuture.next();
+            if (next == null)
+                this.exhausted = true;
+            return next;
+        } catch (InterruptedException ie) {
+            Thread.currentThread().interrupt();
+            throw Throwables.propagate(ie);
+        } catch (ExecutionException ee) {
+            throw new UncheckedExecutionException(ee.getCause());
+        }
+    }
+
+    /**
+     * Waits for the next result, then collects as many more results as are immediately available.
+     */
+    private List<V> nextBatch(final int maxElements) {
+        List<V> batch = Lists.newArrayList();
+        V next = this.next();
+        if (next == null)
+            return batch;
+        batch.add(next);
+
+        if (this.queuture instanceof QueutureTask) {
+            /* Take whatever is already there in one go, withdrawing the request if nothing is. */
+            CompletableFuture<List<V>> rest = ((QueutureTask<V>) this.queuture).nextAsync(maxElements - 1);
+            if (!rest.cancel(false) && !rest.isCompletedExceptionally())
+                batch.addAll(rest.join());
+            return batch;
+        }
+
+        try {
+            while (batch.size() < maxElements && (next = this.queuture.next(0, TimeUnit.NANOSECONDS)) != null)
+                batch.add(next);
+            if (next == null)
+                this.exhausted = true;
+        } catch (TimeoutException te) {
+            /* Nothing more available right now. */
+        } catch (InterruptedException ie) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException ee) {
+            /* Deliver what we have; the failure will be observed by the next read. */
+        }
+        return batch;
+    }
+
+}
@@ -1,11 +1,18 @@
 package com.invectorate.open.queutures;
 
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
 import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.SynchronousQueue;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.locks.AbstractQueuedSynchronizer;
 
 import com.google.common.base.Preconditions;
@@ -25,6 +32,11 @@ import com.google.common.base.Stopwatch;
  * <p>
  * In addition to serving as a standalone class, this provides {@code protected} functionality that may be useful when
  * creating customized task classes.
+ * <p>
+ * When running under JDK Flight Recorder, this class emits events in the {@code Queutures} category for the execution
+ * and cancellation of the computation, for producers waiting in {@link QueutureBox#put(Object)}, and for consumers
+ * waiting in {@link #next()}. The waiting events have a default threshold, so that only waits long enough to matter
+ * are recorded.
  * 
  * @author Noah Fontes <nfontes@invectorate.com>
  * @author Doug Lea
@@ -49,10 +61,30 @@ public class QueutureTask<V> implements RunnableQueuture<V> {
      *            The queue to use to pass results to this class.
      */
     public QueutureTask(final Informable<QueutureBox<V>> informable, final BlockingQueue<V> queue) {
+        this(informable, queue, OverflowPolicy.block());
+    }
+
+    /**
+     * Create a new {@code QueutureTask} that will execute the given {@link Informable} as its computation, passing
+     * results back to this class using the given {@link BlockingQueue} and handling a full queue according to the given
+     * {@link OverflowPolicy}.
+     * <p>
+     * The queue passed to this object is required to be empty ({@link BlockingQueue#isEmpty()}). Additionally, it must
+     * not be modified in any way outside of this class until {@link #isDone()} returns {@code true}.
+     * 
+     * @param informable
+     *            The computation to execute.
+     * @param queue
+     *            The queue to use to pass results to this class.
+     * @param overflowPolicy
+     *            What to do with results that do not fit in the queue.
+     */
+    public QueutureTask(final Informable<QueutureBox<V>> informable, final BlockingQueue<V> queue, final OverflowPolicy overflowPolicy) {
         Preconditions.checkNotNull(informable, "informable must be specified");
         Preconditions.checkNotNull(queue, "queue must be specified");
+        Preconditions.checkNotNull(overflowPolicy, "overflowPolicy must be specified");
 
-        this.sync = new Sync(informable, queue);
+        this.sync = new Sync(informable, queue, overflowPolicy);
     }
 
     @Override
@@ -80,6 +112,61 @@ public class QueutureTask<V> implements RunnableQueuture<V> {
         return this.sync.innerNext(unit.toNanos(timeout));
     }
 
+    /**
+     * Returns the number of results that have been discarded by this task's {@link OverflowPolicy} because the queue
+     * was full. Always zero under {@link OverflowPolicy#block()}.
+     * 
+     * @return The number of discarded results.
+     */
+    public long getDroppedCount() {
+        return this.sync.dropped.get();
+    }
+
+    /**
+     * Returns a future that will be completed with the next result of the asynchronous computation.
+     * <p>
+     * Unlike {@link #next()}, this method never blocks. If a result is already available, the returned future is
+     * completed immediately; otherwise it is completed by the producing thread when it next puts a result into the box,
+     * so any dependent actions run in that thread unless an asynchronous variant is used. If there are no more results,
+     * the future is completed with null. If the computation fails or is cancelled, the future is completed exceptionally
+     * with the cause of failure or a {@link CancellationException}, respectively.
+     * <p>
+     * Cancelling the returned future before it has been completed withdraws the request without consuming a result.
+     * 
+     * @return A future for the next result.
+     */
+    public CompletableFuture<V> nextAsync() {
+        return this.sync.innerNextAsync(new SingleWaiter<V>());
+    }
+
+    /**
+     * Returns a future that will be completed with up to the given number of results of the asynchronous computation.
+     * <p>
+     * The future is completed as soon as at least one result is available, with as many results as are available at
+     * that time, up to {@code maxElements}. If there are no more results, the future is completed with an empty list.
+     * Otherwise, this method behaves as {@link #nextAsync()}.
+     * 
+     * @param maxElements
+     *            The maximum number of results to deliver.
+     * 
+     * @return A future for the next batch of results.
+     */
+    public CompletableFuture<List<V>> nextAsync(final int maxElements) {
+        Preconditions.checkArgument(maxElements > 0, "maxElements must be positive");
+
+        return this.sync.innerNextAsync(new BatchWaiter<V>(maxElements));
+    }
+
+    /**
+     * Returns {@code true} if a call to {@link #next()} would return without blocking, either because a result is
+     * available or because the computation is done.
+     * <p>
+     * Subclasses may use this method to avoid preparing for a blocking wait that will not happen.
+     */
+    protected boolean isNextAvailable() {
+        return this.sync.innerIsNextAvailable();
+    }
+
     /**
      * Callback method invoked when this task transitions to a done state (whether normally or via cancellation).
      * <p>
@@ -89,6 +176,16 @@ public class QueutureTask<V> implements RunnableQueuture<V> {
      */
     protected void done() {}
 
+    /**
+     * Callback method invoked when a consumer is about to wait for a result that is not yet available, either by
+     * blocking in {@link #next()} or by registering a request through {@link #nextAsync()}.
+     * <p>
+     * The default implementation does nothing. Subclasses may override this method to give the computation a higher
+     * priority while someone is waiting on it. This method may be invoked many times, from many threads, and possibly
+     * after the computation has completed, so implementations should be cheap and idempotent.
+     */
+    protected void demanded() {}
+
     /**
      * Causes this class to report an {@link ExecutionException} with the given {@link Throwable} as its cause, unless
      * the computation has already completed or has been cancelled.
@@ -136,12 +233,23 @@ public class QueutureTask<V> implements RunnableQueuture<V> {
 
         private final BlockingQueue<V> queue;
 
+        private final OverflowPolicy overflowPolicy;
+        /** The number of results discarded by the overflow policy. */
+        private final AtomicLong dropped = new AtomicLong();
+        /** The number of results that did not fit in the queue, for sampling. */
+        private final AtomicLong overflowed = new AtomicLong();
+
+        /** Pending {@link #nextAsync()} requests, in the order they were made. */
+        private final ConcurrentLinkedQueue<Waiter<V, ?>> waiters = new ConcurrentLinkedQueue<Waiter<V, ?>>();
+        /** The number of requests to transfer results to waiters; see {@link #innerTransfer()}. */
+        private final AtomicInteger transfers = new AtomicInteger();
+
         /**
          * The thread running task. Used for interrupting upon receiving a cancellation request.
          */
         private volatile Thread runner;
 
-        Sync(final Informable<QueutureBox<V>> informable, final BlockingQueue<V> queue) {
+        Sync(final Informable<QueutureBox<V>> informable, final BlockingQueue<V> queue, final OverflowPolicy overflowPolicy) {
             this.runnable = new Runnable() {
 
                 @Override
@@ -151,6 +259,7 @@ public class QueutureTask<V> implements RunnableQueuture<V> {
 
             };
             this.queue = queue;
+            this.overflowPolicy = overflowPolicy;
         }
 
         private boolean ranOrCancelled(final int state) {
@@ -175,6 +284,10 @@ public class QueutureTask<V> implements RunnableQueuture<V> {
             return true;
         }
 
+        boolean innerIsNextAvailable() {
+            return this.tryAcquireShared(0) >= 0;
+        }
+
         boolean innerIsCancelled() {
             return this.getState() == Sync.CANCELLED;
         }
@@ -185,7 +298,15 @@ public class QueutureTask<V> implements RunnableQueuture<V> {
 
         V innerNext() throws InterruptedException, ExecutionException {
             for (;;) {
+                NextEvent event = null;
+                if (this.tryAcquireShared(0) < 0) {
+                    QueutureTask.this.demanded();
+                    event = new NextEvent();
+                    event.begin();
+                }
                 this.acquireSharedInterruptibly(0);
+                if (event != null)
+                    event.finish(QueutureTask.this, false);
                 if (this.getState() == Sync.CANCELLED)
                     throw new CancellationException();
                 if (this.exception != null)
@@ -205,9 +326,19 @@ public class QueutureTask<V> implements RunnableQueuture<V> {
         }
 
         V innerNext(final long nanosTimeout) throws InterruptedException, ExecutionException, TimeoutException {
+            /* Always make at least one attempt, so that a zero timeout polls without waiting. */
             Stopwatch stopwatch = new Stopwatch().start();
-            while (nanosTimeout - stopwatch.elapsedTime(TimeUnit.NANOSECONDS) > 0) {
-                if (!this.tryAcquireSharedNanos(0, Math.max(0, nanosTimeout - stopwatch.elapsedTime(TimeUnit.NANOSECONDS))))
+            do {
+                NextEvent event = null;
+                if (this.tryAcquireShared(0) < 0) {
+                    QueutureTask.this.demanded();
+                    event = new NextEvent();
+                    event.begin();
+                }
+                boolean acquired = this.tryAcquireSharedNanos(0, Math.max(0, nanosTimeout - stopwatch.elapsedTime(TimeUnit.NANOSECONDS)));
+                if (event != null)
+                    event.finish(QueutureTask.this, !acquired);
+                if (!acquired)
                     throw new TimeoutException();
                 if (this.getState() == Sync.CANCELLED)
                     throw new CancellationException();
@@ -224,12 +355,60 @@ public class QueutureTask<V> implements RunnableQueuture<V> {
                 } else {
                     return next;
                 }
-            }
+            } while (nanosTimeout - stopwatch.elapsedTime(TimeUnit.NANOSECONDS) > 0);
 
             /* Out of time! */
             throw new TimeoutException();
         }
 
+        <R> CompletableFuture<R> innerNextAsync(final Waiter<V, R> waiter) {
+            this.waiters.add(waiter);
+            this.innerTransfer();
+            if (!waiter.isDone())
+                QueutureTask.this.demanded();
+            return waiter;
+        }
+
+        /**
+         * Hands available results to pending asynchronous requests, oldest first, and completes the remaining requests
+         * once the computation is over.
+         * <p>
+         * This is called after every state change that could allow a request to complete: a new request, a new result,
+         * and the end of the computation. Results are only ever removed from the queue while holding the monitor of a
+         * request that has not completed, so a request cancelled concurrently can never cause a result to be lost.
+         * <p>
+         * Only one thread transfers at a time; a thread that finds another already transferring leaves a note for it to
+         * go around again instead. Besides avoiding contention, this keeps a dependent action that makes a new request
+         * from recursing back into this method.
+         */
+        void innerTransfer() {
+            if (this.transfers.getAndIncrement() != 0)
+                return;
+
+            int missed = 1;
+            do {
+                this.transferToWaiters();
+                missed = this.transfers.addAndGet(-missed);
+            } while (missed != 0);
+        }
+
+        private void transferToWaiters() {
+            Waiter<V, ?> waiter;
+            while ((waiter = this.waiters.peek()) != null) {
+                int s = this.getState();
+                if (s == Sync.CANCELLED) {
+                    waiter.fail(new CancellationException());
+                } else if (this.exception != null) {
+                    waiter.fail(this.exception);
+                } else if (!waiter.fulfil(this.queue)) {
+                    if (!this.ranOrCancelled(s))
+                        return;
+                    waiter.finish();
+                }
+                this.waiters.remove(waiter);
+            }
+        }
+
         void innerSetException(final Throwable t) {
             for (;;) {
                 int s = this.getState();
@@ -246,6 +425,7 @@ public class QueutureTask<V> implements RunnableQueuture<V> {
                     this.exception = t;
                     this.releaseShared(0);
                     this.queue.clear();
+                    this.innerTransfer();
                     QueutureTask.this.done();
                     return;
                 }
@@ -257,8 +437,10 @@ public class QueutureTask<V> implements RunnableQueuture<V> {
                 int s = this.getState();
                 if (this.ranOrCancelled(s))
                     return false;
-                if (this.compareAndSetState(s, Sync.CANCELLED))
+                if (this.compareAndSetState(s, Sync.CANCELLED)) {
+                    TaskCancellationEvent.emit(QueutureTask.this, s == Sync.RUNNING, mayInterruptIfRunning);
                     break;
+                }
             }
             if (mayInterruptIfRunning) {
                 Thread r = this.runner;
@@ -267,6 +449,7 @@ public class QueutureTask<V> implements RunnableQueuture<V> {
             }
             this.releaseShared(0);
             this.queue.clear();
+            this.innerTransfer();
             QueutureTask.this.done();
             return true;
         }
@@ -277,28 +460,36 @@ public class QueutureTask<V> implements RunnableQueuture<V> {
 
             this.runner = Thread.currentThread();
             if (this.getState() == Sync.RUNNING) { // recheck after setting thread
+                TaskExecutionEvent event = new TaskExecutionEvent();
+                event.begin();
                 try {
                     this.runnable.run();
                 } catch (Throwable ex) {
                     QueutureTask.this.setException(ex);
+                    event.finish(QueutureTask.this, this.getState() == Sync.CANCELLED ? TaskExecutionEvent.CANCELLED : TaskExecutionEvent.FAILED, ex);
                     return;
                 }
 
                 /* And now we're done. */
                 for (;;) {
                     int s = this.getState();
-                    if (s == Sync.RAN)
+                    if (s == Sync.RAN) {
+                        event.finish(QueutureTask.this, TaskExecutionEvent.COMPLETED, null);
                         return;
+                    }
                     if (s == Sync.CANCELLED) {
                         // aggressively release to set runner to null,
                         // in case we are racing with a cancel request
                         // that will try to interrupt runner
                         this.releaseShared(0);
+                        event.finish(QueutureTask.this, TaskExecutionEvent.CANCELLED, null);
                         return;
                     }
                     if (this.compareAndSetState(s, Sync.RAN)) {
                         this.releaseShared(0);
+                        this.innerTransfer();
                         QueutureTask.this.done();
+                        event.finish(QueutureTask.this, TaskExecutionEvent.COMPLETED, null);
                         return;
                     }
                 }
@@ -310,27 +501,223 @@ public class QueutureTask<V> implements RunnableQueuture<V> {
         class BoxImpl implements QueutureBox<V> {
 
             @Override
-            public void put(final V object) throws InterruptedException {
+            public boolean isCancelled() {
+                return Sync.this.getState() == Sync.CANCELLED;
+            }
+
+            @Override
+            public boolean put(final V object) throws InterruptedException {
                 Preconditions.checkNotNull(object, "object must be specified");
 
                 /* Don't add to the queue if we're in a cancellation state. */
-                if (Sync.this.getState() == Sync.RUNNING) {
+                if (Sync.this.getState() != Sync.RUNNING)
+                    return false;
+
+                if (Sync.this.overflowPolicy.kind == OverflowPolicy.Kind.BLOCK) {
+                    BoxPutEvent event = new BoxPutEvent();
+                    event.begin();
                     Sync.this.queue.put(object);
-                    Sync.this.releaseShared(1);
-                }
+                    event.finish(QueutureTask.this, Sync.this.queue);
+                } else if (!this.offer(object))
+                    return true;
+                return this.published();
             }
 
             @Override
-            public void put(final V object, final long timeout, final TimeUnit unit) throws TimeoutException, InterruptedException {
+            public boolean put(final V object, final long timeout, final TimeUnit unit) throws TimeoutException, InterruptedException {
                 Preconditions.checkNotNull(object, "object must be specified");
 
-                if (Sync.this.getState() == Sync.RUNNING) {
-                    if (!Sync.this.queue.offer(object, timeout, unit))
+                if (Sync.this.getState() != Sync.RUNNING)
+                    return false;
+
+                if (Sync.this.overflowPolicy.kind == OverflowPolicy.Kind.BLOCK) {
+                    BoxPutEvent event = new BoxPutEvent();
+                    event.begin();
+                    boolean added = Sync.this.queue.offer(object, timeout, unit);
+                    event.finish(QueutureTask.this, Sync.this.queue);
+                    if (!added)
                         throw new TimeoutException();
-                    Sync.this.releaseShared(1);
+                } else if (!this.offer(object)) {
+                    return true;
+                }
+                return this.published();
+            }
+
+            /**
+             * Adds an object to the queue without waiting, applying the overflow policy if the queue is full.
+             * 
+             * @return {@code false} if the object was discarded.
+             */
+            private boolean offer(final V object) {
+                BlockingQueue<V> queue = Sync.this.queue;
+                if (queue.offer(object))
+                    return true;
+
+                switch (Sync.this.overflowPolicy.kind) {
+                case SAMPLE:
+                    if (Sync.this.overflowed.incrementAndGet() % Sync.this.overflowPolicy.interval == 0)
+                        return this.evictAndOffer(object);
+                    Sync.this.dropped.incrementAndGet();
+                    return false;
+                case DROP_NEWEST:
+                    Sync.this.dropped.incrementAndGet();
+                    return false;
+                case DROP_OLDEST:
+                    return this.evictAndOffer(object);
+                default:
+                    throw new AssertionError(Sync.this.overflowPolicy);
                 }
             }
 
+            /**
+             * Evicts the oldest objects from the queue until the given object fits. Consumers may take objects
+             * concurrently, in which case fewer (or no) objects need to be evicted.
+             */
+            private boolean evictAndOffer(final V object) {
+                BlockingQueue<V> queue = Sync.this.queue;
+                do {
+                    if (queue.poll() != null) {
+                        Sync.this.dropped.incrementAndGet();
+                    } else if (!queue.offer(object)) {
+                        /*
+                         * There is nothing left to evict, and the object still doesn't fit; the queue cannot hold it at
+                         * all (for example, because its space is shared with other queues).
+                         */
+                        Sync.this.dropped.incrementAndGet();
+                        return false;
+                    } else {
+                        return true;
+                    }
+                } while (!queue.offer(object));
+                return true;
+            }
+
+            /**
+             * Wakes up consumers after an object has been added to the queue.
+             * <p>
+             * If we were cancelled while waiting for space in the queue, the cancellation has already cleared the queue
+             * and the object we just added would never be read; clear it again so it doesn't linger.
+             * <p>
+             * If no consumer is waiting, there is nobody to wake, so we skip releasing. This is safe because a consumer
+             * always checks the queue again after enqueuing itself and before parking, so it either sees the object we
+             * just added or is visible to us here. The same goes for asynchronous requests, which transfer results
+             * themselves after they are added, so a producer only transfers when one is already pending.
+             */
+            private boolean published() {
+                if (Sync.this.getState() == Sync.CANCELLED) {
+                    Sync.this.queue.clear();
+                    return false;
+                }
+                if (Sync.this.hasQueuedThreads())
+                    Sync.this.releaseShared(1);
+                if (!Sync.this.waiters.isEmpty())
+                    Sync.this.innerTransfer();
+                return true;
+            }
+
+        }
+
+    }
+
+    /**
+     * A pending request for results made through {@link QueutureTask#nextAsync()}.
+     * <p>
+     * All means of completing a request are serialized on its monitor, so that the task can remove results from the
+     * queue on behalf of a request knowing that the request will accept them.
+     */
+    private abstract static class Waiter<V, R> extends CompletableFuture<R> {
+
+        /**
+         * Removes results for this request from the queue.
+         * 
+         * @return The value to complete this request with, or null if the queue is empty.
+         */
+        abstract R take(BlockingQueue<V> queue);
+
+        /**
+         * Returns the value to complete this request with when there are no more results.
+         */
+        abstract R exhausted();
+
+        /**
+         * Completes this request with results from the queue, if there are any.
+         * 
+         * @return {@code false} if this request is still pending because the queue is empty.
+         */
+        synchronized boolean fulfil(final BlockingQueue<V> queue) {
+            if (this.isDone())
+                return true;
+            R value = this.take(queue);
+            if (value == null)
+                return false;
+            super.complete(value);
+            return true;
+        }
+
+        synchronized void finish() {
+            super.complete(this.exhausted());
+        }
+
+        synchronized void fail(final Throwable t) {
+            super.completeExceptionally(t);
+        }
+
+        @Override
+        public synchronized boolean complete(final R value) {
+            return super.complete(value);
+        }
+
+        @Override
+        public synchronized boolean completeExceptionally(final Throwable ex) {
+            return super.completeExceptionally(ex);
+        }
+
+        @Override
+        public synchronized boolean cancel(final boolean mayInterruptIfRunning) {
+            return super.cancel(mayInterruptIfRunning);
+        }
+
+    }
+
+    private static final class SingleWaiter<V> extends Waiter<V, V> {
+
+        @Override
+        V take(final BlockingQueue<V> queue) {
+            return queue.poll();
+        }
+
+        @Override
+        V exhausted() {
+            return null;
+        }
+
+    }
+
+    private static final class BatchWaiter<V> extends Waiter<V, List<V>> {
+
+        private final int maxElements;
+
+        BatchWaiter(final int maxElements) {
+            this.maxElements = maxElements;
+        }
+
+        @Override
+        List<V> take(final BlockingQueue<V> queue) {
+            V first = queue.poll();
+            if (first == null)
+                return null;
+
+            List<V> batch = new ArrayList<V>(Math.min(this.maxElements, queue.size() + 1));
+            batch.add(first);
+            V next;
+            while (batch.size() < this.maxElements && (next = queue.poll()) != null)
+                batch.add(next);
+            return batch;
+        }
+
+        @Override
+        List<V> exhausted() {
+            return Collections.emptyList();
         }
 
     }
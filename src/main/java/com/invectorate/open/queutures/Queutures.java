@@ -0,0 +1,359 @@
+package com.invectorate.open.queutures;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiFunction;
+import java.util.function.BinaryOperator;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+import com.google.common.base.Preconditions;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.util.concurrent.UncheckedExecutionException;
+
+/**
+ * Static utility methods pertaining to the {@link Queuture} interface.
+ * <p>
+ * The queutures returned by these methods are views of their sources: reading from them reads from the source, and
+ * cancelling them cancels the source. None of them require threads of their own; any waiting they do takes place in the
+ * thread calling {@link Queuture#next()}. The aggregation operators, which consume their sources rather than provide
+ * views of them, instead read on threads of a given {@link Executor}.
+ * 
+ * @author Noah Fontes <nfontes@invectorate.com>
+ */
+public final class Queutures {
+
+    private Queutures() {}
+
+    /**
+     * Returns a sequential {@link Stream} of the results of the given queuture.
+     * <p>
+     * The stream reads results as it needs them, blocking while it waits for the computation to produce them. Calling
+     * {@link Stream#parallel()} on it allows CPU-intensive processing of results to be spread across the common
+     * fork/join pool: the stream is split into batches of whichever results are available when each split is made. A
+     * parallel stream does not preserve the order in which results were generated.
+     * <p>
+     * Closing the stream cancels the queuture, interrupting its computation if it is still running, so a stream that is
+     * abandoned early (for example, after {@link Stream#limit(long)} or {@link Stream#findAny()}) should be closed,
+     * preferably with a try-with-resources statement.
+     * <p>
+     * If the computation fails, the stream throws an {@link UncheckedExecutionException} with the cause of failure.
+     * 
+     * @param queuture
+     *            The queuture to read from.
+     * 
+     * @return A stream of the results of the queuture.
+     */
+    public static <V> Stream<V> stream(final Queuture<V> queuture) {
+        Preconditions.checkNotNull(queuture, "queuture must be specified");
+
+        return StreamSupport.stream(new QueutureSpliterator<V>(queuture), false).onClose(new Runnable() {
+
+            @Override
+            public void run() {
+                queuture.cancel(true);
+            }
+
+        });
+    }
+
+    /**
+     * Returns a queuture that reads at most the given number of results from the given queuture.
+     * <p>
+     * As soon as the last permitted result has been read, the source is cancelled (interrupting its computation if it
+     * is running), so that no more work is spent producing results that will never be read. Further calls to
+     * {@link Queuture#next()} return null, and the returned queuture reports that it is done but not cancelled.
+     * 
+     * @param source
+     *            The queuture to read from.
+     * @param limit
+     *            The maximum number of results to read.
+     * 
+     * @return A limited view of the source.
+     */
+    public static <V> Queuture<V> limit(final Queuture<V> source, final long limit) {
+        Preconditions.checkNotNull(source, "source must be specified");
+        Preconditions.checkArgument(limit >= 0, "limit must not be negative");
+
+        return new LimitedQueuture<V>(source, limit);
+    }
+
+    /**
+     * Returns a queuture that merges the results of the given queutures, each of which must deliver its results in the
+     * order defined by the given comparator, into a single sequence in that order.
+     * <p>
+     * Equivalent to {@code mergeSorted(comparator, Arrays.asList(sources))}.
+     * 
+     * @param comparator
+     *            The order in which every source delivers its results.
+     * @param sources
+     *            The queutures to read from.
+     * 
+     * @return A sorted merge of the sources.
+     */
+    @SafeVarargs
+    public static <V> Queuture<V> mergeSorted(final Comparator<? super V> comparator, final Queuture<? extends V>... sources) {
+        Preconditions.checkNotNull(sources, "sources must be specified");
+
+        /* Copy element by element; handing the array itself to another method defeats @SafeVarargs. */
+        List<Queuture<? extends V>> list = Lists.newArrayListWithCapacity(sources.length);
+        for (Queuture<? extends V> source : sources)
+            list.add(source);
+        return Queutures.mergeSorted(comparator, list);
+    }
+
+    /**
+     * Returns a queuture that merges the results of the given queutures, each of which must deliver its results in the
+     * order defined by the given comparator, into a single sequence in that order.
+     * <p>
+     * At most one result from each source is held at a time, in a heap of the sources' next results. After a result is
+     * delivered, the next call to {@link Queuture#next()} waits only for the source that result came from, since the
+     * next results of the other sources are already known. Results that compare equal are delivered in the order of
+     * their sources. Consumers of the returned queuture take turns, since each result depends on the one before.
+     * <p>
+     * If a source fails, {@code next()} throws its {@link ExecutionException} without discarding any results already
+     * read from the other sources. Cancelling the returned queuture cancels every source.
+     * 
+     * @param comparator
+     *            The order in which every source delivers its results.
+     * @param sources
+     *            The queutures to read from.
+     * 
+     * @return A sorted merge of the sources.
+     */
+    public static <V> Queuture<V> mergeSorted(final Comparator<? super V> comparator, final Iterable<? extends Queuture<? extends V>> sources) {
+        Preconditions.checkNotNull(comparator, "comparator must be specified");
+        Preconditions.checkNotNull(sources, "sources must be specified");
+
+        List<Queuture<? extends V>> list = Lists.newArrayList();
+        for (Queuture<? extends V> source : sources)
+            list.add(Preconditions.checkNotNull(source, "sources must not contain null"));
+        return new SortedMergeQueuture<V>(list, comparator);
+    }
+
+    /**
+     * Counts the results of the given queuture as they arrive.
+     * 
+     * @param source
+     *            The queuture to read from.
+     * @param executor
+     *            The executor to read on.
+     * @param parallelism
+     *            The number of threads to read with.
+     * 
+     * @return The running count.
+     * 
+     * @see #reduce(Queuture, Executor, int, Object, BiFunction, BinaryOperator)
+     */
+    public static Aggregation<Long> count(final Queuture<?> source, final Executor executor, final int parallelism) {
+        return Queutures.<Object, Long> reduce(Queutures.<Object> widen(source), executor, parallelism, 0L, new BiFunction<Long, Object, Long>() {
+
+            @Override
+            public Long apply(final Long count, final Object result) {
+                return count + 1;
+            }
+
+        }, new BinaryOperator<Long>() {
+
+            @Override
+            public Long apply(final Long a, final Long b) {
+                return a + b;
+            }
+
+        });
+    }
+
+    /**
+     * Folds the results of the given queuture into a single value as they arrive.
+     * <p>
+     * The given number of drainers read from the source on the given executor. Each folds the results it reads into its
+     * own accumulator, starting from {@code identity}; the accumulators are combined with {@code combiner} whenever a
+     * snapshot is taken and once the source has no more results. Since results are divided among drainers arbitrarily,
+     * {@code identity} must be an identity for {@code combiner}, and {@code combiner} must be associative and
+     * commutative. Neither function may modify its arguments.
+     * 
+     * @param source
+     *            The queuture to read from.
+     * @param executor
+     *            The executor to read on.
+     * @param parallelism
+     *            The number of threads to read with.
+     * @param identity
+     *            The initial value of every accumulator.
+     * @param accumulator
+     *            Folds one result into an accumulator.
+     * @param combiner
+     *            Combines two accumulators.
+     * 
+     * @return The running aggregate.
+     */
+    public static <V, A> Aggregation<A> reduce(final Queuture<V> source, final Executor executor, final int parallelism, final A identity, final BiFunction<A, ? super V, A> accumulator, final BinaryOperator<A> combiner) {
+        Preconditions.checkNotNull(source, "source must be specified");
+        Preconditions.checkNotNull(executor, "executor must be specified");
+        Preconditions.checkArgument(parallelism > 0, "parallelism must be positive");
+        Preconditions.checkNotNull(accumulator, "accumulator must be specified");
+        Preconditions.checkNotNull(combiner, "combiner must be specified");
+
+        return Aggregation.start(source, executor, parallelism, new Supplier<A>() {
+
+            @Override
+            public A get() {
+                return identity;
+            }
+
+        }, accumulator, combiner);
+    }
+
+    /**
+     * Folds the results of the given queuture into one value per key as they arrive.
+     * <p>
+     * Each result is classified by {@code classifier}, and folded into the value for its key as if by
+     * {@link #reduce(Queuture, Executor, int, Object, BiFunction, BinaryOperator)}. Each drainer keeps its own map of
+     * values, which is only ever written by that drainer. Snapshots and the final result are new maps.
+     * 
+     * @param source
+     *            The queuture to read from.
+     * @param executor
+     *            The executor to read on.
+     * @param parallelism
+     *            The number of threads to read with.
+     * @param classifier
+     *            Determines the key of each result.
+     * @param identity
+     *            The initial value for every key.
+     * @param accumulator
+     *            Folds one result into the value for its key.
+     * @param combiner
+     *            Combines two values for the same key.
+     * 
+     * @return The running aggregate.
+     */
+    public static <V, K, A> Aggregation<Map<K, A>> groupBy(final Queuture<V> source, final Executor executor, final int parallelism, final Function<? super V, ? extends K> classifier, final A identity, final BiFunction<A, ? super V, A> accumulator, final BinaryOperator<A> combiner) {
+        Preconditions.checkNotNull(source, "source must be specified");
+        Preconditions.checkNotNull(executor, "executor must be specified");
+        Preconditions.checkArgument(parallelism > 0, "parallelism must be positive");
+        Preconditions.checkNotNull(classifier, "classifier must be specified");
+        Preconditions.checkNotNull(accumulator, "accumulator must be specified");
+        Preconditions.checkNotNull(combiner, "combiner must be specified");
+
+        /*
+         * The per-drainer maps are concurrent maps, so that snapshots can read them while their drainers write to them;
+         * every write is made by one thread, so they are never contended. The values in them are immutable.
+         */
+        return Aggregation.start(source, executor, parallelism, new Supplier<Map<K, A>>() {
+
+            @Override
+            public Map<K, A> get() {
+                return new ConcurrentHashMap<K, A>();
+            }
+
+        }, new BiFunction<Map<K, A>, V, Map<K, A>>() {
+
+            @Override
+            public Map<K, A> apply(final Map<K, A> values, final V result) {
+                values.compute(classifier.apply(result), new BiFunction<K, A, A>() {
+
+                    @Override
+                    public A apply(final K key, final A value) {
+                        return accumulator.apply(value == null ? identity : value, result);
+                    }
+
+                });
+                return values;
+            }
+
+        }, new BinaryOperator<Map<K, A>>() {
+
+            @Override
+            public Map<K, A> apply(final Map<K, A> a, final Map<K, A> b) {
+                Map<K, A> combined = Maps.newHashMap(a);
+                for (Map.Entry<K, A> entry : b.entrySet())
+                    combined.merge(entry.getKey(), entry.getValue(), combiner);
+                return combined;
+            }
+
+        });
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <V> Queuture<V> widen(final Queuture<? extends V> queuture) {
+        /* Safe, since a queuture only ever produces values. */
+        return (Queuture<V>) queuture;
+    }
+
+    /**
+     * Returns a queuture that reads from the given queuture no faster than the given rate.
+     * <p>
+     * Equivalent to {@code rateLimited(source, permitsPerSecond, 1)}.
+     * 
+     * @param source
+     *            The queuture to read from.
+     * @param permitsPerSecond
+     *            The maximum number of results to read per second.
+     * 
+     * @return A rate-limited view of the source.
+     */
+    public static <V> Queuture<V> rateLimited(final Queuture<V> source, final double permitsPerSecond) {
+        return Queutures.rateLimited(source, permitsPerSecond, 1);
+    }
+
+    /**
+     * Returns a queuture that reads from the given queuture no faster than the given rate, allowing short bursts.
+     * <p>
+     * The limit is enforced by a token bucket that holds up to {@code burst} tokens and refills at
+     * {@code permitsPerSecond}. Each call to {@link Queuture#next()} takes one token before reading from the source,
+     * sleeping in the calling thread if none is available. The rate is shared among all threads reading from the returned
+     * queuture.
+     * 
+     * @param source
+     *            The queuture to read from.
+     * @param permitsPerSecond
+     *            The maximum number of results to read per second.
+     * @param burst
+     *            The maximum number of results that may be read in quick succession after a period of inactivity.
+     * 
+     * @return A rate-limited view of the source.
+     */
+    public static <V> Queuture<V> rateLimited(final Queuture<V> source, final double permitsPerSecond, final int burst) {
+        Preconditions.checkNotNull(source, "source must be specified");
+
+        return new RateLimitedQueuture<V>(source, permitsPerSecond, burst);
+    }
+
+    /**
+     * Returns a queuture that groups the results of the given queuture into lists.
+     * <p>
+     * Each call to {@link Queuture#next()} on the returned queuture waits for a result from the source, then continues
+     * collecting results until either {@code maxSize} results have been collected or the given amount of time has passed
+     * since the first result was read, whichever happens first. Windows are never empty; once the source has no more
+     * results, {@code next()} returns null.
+     * 
+     * @param source
+     *            The queuture to read from.
+     * @param maxSize
+     *            The maximum number of results in a window.
+     * @param time
+     *            The maximum amount of time to spend collecting a window.
+     * @param unit
+     *            The time unit of the {@code time} parameter.
+     * 
+     * @return A windowed view of the source.
+     */
+    public static <V> Queuture<List<V>> window(final Queuture<V> source, final int maxSize, final long time, final TimeUnit unit) {
+        Preconditions.checkNotNull(source, "source must be specified");
+        Preconditions.checkArgument(maxSize > 0, "maxSize must be positive");
+        Preconditions.checkArgument(time >= 0, "time must not be negative");
+
+        return new WindowedQueuture<V>(source, maxSize, unit.toNanos(time));
+    }
+
+}
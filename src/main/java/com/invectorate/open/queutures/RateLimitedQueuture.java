@@ -0,0 +1,46 @@
+package com.invectorate.open.queutures;
+
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * A {@link Queuture} that limits the rate at which results are read from another queuture.
+ * 
+ * @see Queutures#rateLimited(Queuture, double, int)
+ * 
+ * @author Noah Fontes <nfontes@invectorate.com>
+ * 
+ * @param <V>
+ *            The type of object being generated by the computation.
+ */
+final class RateLimitedQueuture<V> extends ForwardingQueuture<V> {
+
+    private final Queuture<V> delegate;
+    private final TokenBucket bucket;
+
+    RateLimitedQueuture(final Queuture<V> delegate, final double permitsPerSecond, final int burst) {
+        this.delegate = delegate;
+        this.bucket = new TokenBucket(permitsPerSecond, burst);
+    }
+
+    @Override
+    protected Queuture<V> delegate() {
+        return this.delegate;
+    }
+
+    @Override
+    public V next() throws InterruptedException, ExecutionException {
+        this.bucket.acquire();
+        return this.delegate.next();
+    }
+
+    @Override
+    public V next(final long timeout, final TimeUnit unit) throws TimeoutException, InterruptedException, ExecutionException {
+        long deadline = System.nanoTime() + unit.toNanos(timeout);
+        if (!this.bucket.tryAcquire(unit.toNanos(timeout)))
+            throw new TimeoutException();
+        return this.delegate.next(deadline - System.nanoTime(), TimeUnit.NANOSECONDS);
+    }
+
+}
@@ -0,0 +1,43 @@
+package com.invectorate.open.queutures;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Converts results to and from bytes, for queutures whose results leave the Java heap.
+ * <p>
+ * Implementations must be stateless or thread-safe, since results may be read by several threads at once.
+ * 
+ * @see MappedQueutureBox
+ * @see MappedQueuture
+ * 
+ * @author Noah Fontes <nfontes@invectorate.com>
+ * 
+ * @param <V>
+ *            The type of object being serialized.
+ */
+public interface Serializer<V> {
+
+    /**
+     * Writes the given object into the given buffer, starting at its current position.
+     * 
+     * @param object
+     *            The object to write.
+     * @param target
+     *            The buffer to write to. Its limit is the amount of space available.
+     * 
+     * @throws java.nio.BufferOverflowException
+     *             If the object does not fit in the remaining space.
+     */
+    public void serialize(V object, ByteBuffer target);
+
+    /**
+     * Reads an object from the given buffer.
+     * 
+     * @param source
+     *            A buffer whose remaining bytes are exactly those written by {@link #serialize(Object, ByteBuffer)}.
+     * 
+     * @return The object read.
+     */
+    public V deserialize(ByteBuffer source);
+
+}
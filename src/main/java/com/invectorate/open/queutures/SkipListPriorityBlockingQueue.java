@@ -0,0 +1,251 @@
+package com.invectorate.open.queutures;
+
+import java.util.AbstractQueue;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.google.common.base.Function;
+import com.google.common.base.Preconditions;
+import com.google.common.collect.Iterators;
+
+/**
+ * A {@link BlockingQueue} that orders its elements by priority, backed by a {@link ConcurrentSkipListSet}.
+ * <p>
+ * Unlike {@link PriorityBlockingQueue}, which guards a binary heap with a single lock, insertion and removal in this
+ * queue are lock-free, so many producers and consumers can operate on it at the same time without serializing on one
+ * another. Elements that compare equal are delivered in insertion order.
+ * <p>
+ * The queue may optionally be bounded, in which case {@link #put(Object)} blocks and {@link #offer(Object)} fails while
+ * the queue is at capacity.
+ * 
+ * @author Noah Fontes <nfontes@invectorate.com>
+ * 
+ * @param <E>
+ *            The type of elements held in this queue.
+ */
+public class SkipListPriorityBlockingQueue<E> extends AbstractQueue<E> implements BlockingQueue<E> {
+
+    private final ConcurrentSkipListSet<Entry<E>> entries;
+    private final AtomicLong sequence = new AtomicLong();
+
+    private final int capacity;
+    /** Permits representing free space in the queue. */
+    private final Semaphore space;
+    /** Permits representing elements that may be removed from the queue. */
+    private final Semaphore items = new Semaphore(0);
+
+    /**
+     * Create a new unbounded queue that orders its elements according to the given comparator.
+     * 
+     * @param comparator
+     *            The comparator used to order elements; the least element is the head of the queue.
+     */
+    public SkipListPriorityBlockingQueue(final Comparator<? super E> comparator) {
+        this(comparator, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Create a new bounded queue that orders its elements according to the given comparator.
+     * 
+     * @param comparator
+     *            The comparator used to order elements; the least element is the head of the queue.
+     * @param capacity
+     *            The maximum number of elements this queue may hold.
+     */
+    public SkipListPriorityBlockingQueue(final Comparator<? super E> comparator, final int capacity) {
+        Preconditions.checkNotNull(comparator, "comparator must be specified");
+        Preconditions.checkArgument(capacity > 0, "capacity must be positive");
+
+        this.entries = new ConcurrentSkipListSet<Entry<E>>(new EntryComparator<E>(comparator));
+        this.capacity = capacity;
+        this.space = capacity == Integer.MAX_VALUE ? null : new Semaphore(capacity);
+    }
+
+    @Override
+    public boolean offer(final E e) {
+        Preconditions.checkNotNull(e);
+
+        if (this.space != null && !this.space.tryAcquire())
+            return false;
+        this.enqueue(e);
+        return true;
+    }
+
+    @Override
+    public void put(final E e) throws InterruptedException {
+        Preconditions.checkNotNull(e);
+
+        if (this.space != null)
+            this.space.acquire();
+        this.enqueue(e);
+    }
+
+    @Override
+    public boolean offer(final E e, final long timeout, final TimeUnit unit) throws InterruptedException {
+        Preconditions.checkNotNull(e);
+
+        if (this.space != null && !this.space.tryAcquire(timeout, unit))
+            return false;
+        this.enqueue(e);
+        return true;
+    }
+
+    @Override
+    public E poll() {
+        if (!this.items.tryAcquire())
+            return null;
+        return this.dequeue();
+    }
+
+    @Override
+    public E take() throws InterruptedException {
+        this.items.acquire();
+        return this.dequeue();
+    }
+
+    @Override
+    public E poll(final long timeout, final TimeUnit unit) throws InterruptedException {
+        if (!this.items.tryAcquire(timeout, unit))
+            return null;
+        return this.dequeue();
+    }
+
+    @Override
+    public E peek() {
+        Iterator<Entry<E>> it = this.entries.iterator();
+        return it.hasNext() ? it.next().element : null;
+    }
+
+    @Override
+    public int size() {
+        return this.items.availablePermits();
+    }
+
+    @Override
+    public int remainingCapacity() {
+        return this.space == null ? Integer.MAX_VALUE : this.space.availablePermits();
+    }
+
+    /**
+     * Returns the maximum number of elements this queue may hold, or {@link Integer#MAX_VALUE} if it is unbounded.
+     */
+    public int capacity() {
+        return this.capacity;
+    }
+
+    /**
+     * Removes a single instance of the given element from this queue. This takes time linear in the size of the queue.
+     */
+    @Override
+    public boolean remove(final Object o) {
+        if (o == null)
+            return false;
+
+        /* Reserve an element first, so that a consumer holding a permit can always find one to remove. */
+        if (!this.items.tryAcquire())
+            return false;
+        for (Entry<E> entry : this.entries) {
+            if (o.equals(entry.element) && this.entries.remove(entry)) {
+                if (this.space != null)
+                    this.space.release();
+                return true;
+            }
+        }
+        this.items.release();
+        return false;
+    }
+
+    @Override
+    public void clear() {
+        while (this.poll() != null) {}
+    }
+
+    @Override
+    public int drainTo(final Collection<? super E> c) {
+        return this.drainTo(c, Integer.MAX_VALUE);
+    }
+
+    @Override
+    public int drainTo(final Collection<? super E> c, final int maxElements) {
+        Preconditions.checkNotNull(c);
+        Preconditions.checkArgument(c != this, "cannot drain a queue into itself");
+
+        int n = 0;
+        E e;
+        while (n < maxElements && (e = this.poll()) != null) {
+            c.add(e);
+            n++;
+        }
+        return n;
+    }
+
+    /**
+     * Returns a weakly consistent iterator over the elements in this queue, in priority order. The iterator does not
+     * support removal.
+     */
+    @Override
+    public Iterator<E> iterator() {
+        return Iterators.unmodifiableIterator(Iterators.transform(this.entries.iterator(), new Function<Entry<E>, E>() {
+
+            @Override
+            public E apply(final Entry<E> entry) {
+                return entry.element;
+            }
+
+        }));
+    }
+
+    private void enqueue(final E e) {
+        this.entries.add(new Entry<E>(e, this.sequence.getAndIncrement()));
+        this.items.release();
+    }
+
+    /**
+     * Removes the head of the queue. The caller must have acquired a permit from {@link #items}, which guarantees that
+     * at least one entry is present.
+     */
+    private E dequeue() {
+        E e = this.entries.pollFirst().element;
+        if (this.space != null)
+            this.space.release();
+        return e;
+    }
+
+    private static final class Entry<E> {
+
+        final E element;
+        final long sequence;
+
+        Entry(final E element, final long sequence) {
+            this.element = element;
+            this.sequence = sequence;
+        }
+
+    }
+
+    private static final class EntryComparator<E> implements Comparator<Entry<E>> {
+
+        private final Comparator<? super E> comparator;
+
+        EntryComparator(final Comparator<? super E> comparator) {
+            this.comparator = comparator;
+        }
+
+        @Override
+        public int compare(final Entry<E> a, final Entry<E> b) {
+            int c = this.comparator.compare(a.element, b.element);
+            if (c != 0)
+                return c;
+            return a.sequence < b.sequence ? -1 : (a.sequence == b.sequence ? 0 : 1);
+        }
+
+    }
+
+}
@@ -0,0 +1,155 @@
+package com.invectorate.open.queutures;
+
+import java.util.ArrayDeque;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.locks.ReentrantLock;
+
+import com.google.common.collect.ImmutableList;
+
+/**
+ * A {@link Queuture} that merges several queutures, each of which delivers its results in sorted order, into a single
+ * sorted sequence.
+ * <p>
+ * The next result of each source is kept in a heap. A result can only be delivered once every source has contributed
+ * its next result to the heap (or run out), so each call to {@link #next()} first waits for the source whose result
+ * was delivered last, and for no other. Results from different sources that compare equal are delivered in the order
+ * the sources were given.
+ * 
+ * @see Queutures#mergeSorted(Comparator, Iterable)
+ * 
+ * @author Noah Fontes <nfontes@invectorate.com>
+ * 
+ * @param <V>
+ *            The type of object being generated by the computation.
+ */
+final class SortedMergeQueuture<V> implements Queuture<V> {
+
+    private final ImmutableList<Queuture<? extends V>> sources;
+
+    /** Guards everything below. Merging is inherently sequential, so consumers take turns. */
+    private final ReentrantLock lock = new ReentrantLock();
+    private final PriorityQueue<Head<V>> heads;
+    /** Sources whose next result must be read before another result can be delivered. */
+    private final Deque<Integer> needed = new ArrayDeque<Integer>();
+
+    private volatile boolean cancelled = false;
+
+    SortedMergeQueuture(final List<Queuture<? extends V>> sources, final Comparator<? super V> comparator) {
+        this.sources = ImmutableList.copyOf(sources);
+        this.heads = new PriorityQueue<Head<V>>(Math.max(1, sources.size()), new Comparator<Head<V>>() {
+
+            @Override
+            public int compare(final Head<V> a, final Head<V> b) {
+                int c = comparator.compare(a.value, b.value);
+                return c != 0 ? c : Integer.compare(a.source, b.source);
+            }
+
+        });
+        for (int i = 0; i < sources.size(); i++)
+            this.needed.add(i);
+    }
+
+    @Override
+    public boolean cancel(final boolean mayInterruptIfRunning) {
+        if (this.isDone())
+            return false;
+
+        this.cancelled = true;
+        for (Queuture<? extends V> source : this.sources)
+            source.cancel(mayInterruptIfRunning);
+        return true;
+    }
+
+    @Override
+    public boolean isCancelled() {
+        return this.cancelled;
+    }
+
+    @Override
+    public boolean isDone() {
+        if (this.cancelled)
+            return true;
+        for (Queuture<? extends V> source : this.sources) {
+            if (!source.isDone())
+                return false;
+        }
+        return true;
+    }
+
+    @Override
+    public V next() throws InterruptedException, ExecutionException {
+        this.lock.lockInterruptibly();
+        try {
+            Integer i;
+            while ((i = this.needed.peek()) != null) {
+                this.checkCancelled();
+                this.filled(i, this.sources.get(i).next());
+            }
+            return this.deliver();
+        } finally {
+            this.lock.unlock();
+        }
+    }
+
+    @Override
+    public V next(final long timeout, final TimeUnit unit) throws TimeoutException, InterruptedException, ExecutionException {
+        long deadline = System.nanoTime() + unit.toNanos(timeout);
+        if (!this.lock.tryLock(timeout, unit))
+            throw new TimeoutException();
+        try {
+            Integer i;
+            while ((i = this.needed.peek()) != null) {
+                this.checkCancelled();
+                this.filled(i, this.sources.get(i).next(Math.max(0L, deadline - System.nanoTime()), TimeUnit.NANOSECONDS));
+            }
+            return this.deliver();
+        } finally {
+            this.lock.unlock();
+        }
+    }
+
+    private void checkCancelled() {
+        if (this.cancelled)
+            throw new CancellationException();
+    }
+
+    /**
+     * Records the next result read from a source. Only called once the read has succeeded, so that a source whose read
+     * times out or fails is read again on the next call.
+     */
+    private void filled(final int source, final V value) {
+        this.needed.poll();
+        if (value != null)
+            this.heads.add(new Head<V>(value, source));
+    }
+
+    private V deliver() {
+        this.checkCancelled();
+
+        Head<V> head = this.heads.poll();
+        if (head == null)
+            return null;
+        this.needed.add(head.source);
+        return head.value;
+    }
+
+    private static final class Head<V> {
+
+        final V value;
+        final int source;
+
+        Head(final V value, final int source) {
+            this.value = value;
+            this.source = source;
+        }
+
+    }
+
+}
@@ -0,0 +1,252 @@
+package com.invectorate.open.queutures;
+
+import java.util.AbstractQueue;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+import com.google.common.base.Function;
+import com.google.common.base.Preconditions;
+import com.google.common.collect.Iterators;
+import com.google.common.collect.Lists;
+
+/**
+ * An unbounded {@link BlockingQueue} that spreads its elements over several independent stripes to reduce contention
+ * between producers.
+ * <p>
+ * Each producer thread always adds to the same stripe, chosen by its thread ID, and each stripe is a lock-free
+ * {@link ConcurrentLinkedQueue}. Producers on different threads therefore rarely touch the same memory, and adding an
+ * element never takes a lock unless a consumer is blocked in {@link #take()} or {@link #poll(long, TimeUnit)}.
+ * Consumers remove elements from the stripes in round-robin order.
+ * <p>
+ * <b>Ordering.</b> Elements added by the same thread are removed in the order that thread added them. No other
+ * ordering is guaranteed: elements added by different threads may be removed in any order, regardless of when they
+ * were added.
+ * 
+ * @see StripedQueutureTask
+ * 
+ * @author Noah Fontes <nfontes@invectorate.com>
+ * 
+ * @param <E>
+ *            The type of elements held in this queue.
+ */
+public class StripedBlockingQueue<E> extends AbstractQueue<E> implements BlockingQueue<E> {
+
+    private final List<ConcurrentLinkedQueue<E>> stripes;
+    private final int mask;
+    private final LongAdder count = new LongAdder();
+    /** The stripe the next consumer should start from. */
+    private final AtomicInteger nextStripe = new AtomicInteger();
+
+    /** Guards waiting for elements; never held by a producer unless a consumer is waiting. */
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition notEmpty = this.lock.newCondition();
+    private final AtomicInteger waiting = new AtomicInteger();
+
+    /**
+     * Create a new queue with one stripe per available processor.
+     */
+    public StripedBlockingQueue() {
+        this(Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Create a new queue with the given number of stripes.
+     * 
+     * @param stripes
+     *            The number of stripes; rounded up to a power of two.
+     */
+    public StripedBlockingQueue(final int stripes) {
+        Preconditions.checkArgument(stripes > 0 && stripes <= 1 << 16, "stripes must be positive and at most 2^16");
+
+        int size = 1;
+        while (size < stripes)
+            size <<= 1;
+        this.stripes = Lists.newArrayListWithCapacity(size);
+        for (int i = 0; i < size; i++)
+            this.stripes.add(new ConcurrentLinkedQueue<E>());
+        this.mask = size - 1;
+    }
+
+    private ConcurrentLinkedQueue<E> stripeForCurrentThread() {
+        long id = Thread.currentThread().getId();
+        int h = (int) (id ^ (id >>> 32)) * 0x9E3779B9;
+        return this.stripes.get((h ^ (h >>> 16)) & this.mask);
+    }
+
+    @Override
+    public boolean offer(final E e) {
+        Preconditions.checkNotNull(e);
+
+        this.stripeForCurrentThread().offer(e);
+        this.count.increment();
+        if (this.waiting.get() > 0) {
+            this.lock.lock();
+            try {
+                this.notEmpty.signal();
+            } finally {
+                this.lock.unlock();
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public void put(final E e) {
+        this.offer(e);
+    }
+
+    @Override
+    public boolean offer(final E e, final long timeout, final TimeUnit unit) {
+        return this.offer(e);
+    }
+
+    @Override
+    public E poll() {
+        int start = this.nextStripe.getAndIncrement();
+        for (int i = 0; i <= this.mask; i++) {
+            E e = this.stripes.get((start + i) & this.mask).poll();
+            if (e != null) {
+                this.count.decrement();
+                return e;
+            }
+        }
+        return null;
+    }
+
+    @Override
+    public E take() throws InterruptedException {
+        E e;
+        while ((e = this.awaitAndPoll(-1L)) == null) {}
+        return e;
+    }
+
+    @Override
+    public E poll(final long timeout, final TimeUnit unit) throws InterruptedException {
+        return this.awaitAndPoll(Math.max(0L, unit.toNanos(timeout)));
+    }
+
+    /**
+     * Waits for and removes an element, giving up after the given timeout, or waiting indefinitely if the timeout is
+     * negative.
+     */
+    private E awaitAndPoll(final long nanosTimeout) throws InterruptedException {
+        E e = this.poll();
+        if (e != null)
+            return e;
+
+        long nanos = nanosTimeout;
+        this.lock.lockInterruptibly();
+        this.waiting.incrementAndGet();
+        try {
+            /* Producers only signal if they see us waiting, so check again now that we are. */
+            while ((e = this.poll()) == null) {
+                if (nanosTimeout < 0) {
+                    this.notEmpty.await();
+                } else {
+                    if (nanos <= 0)
+                        return null;
+                    nanos = this.notEmpty.awaitNanos(nanos);
+                }
+            }
+            return e;
+        } finally {
+            this.waiting.decrementAndGet();
+            this.lock.unlock();
+        }
+    }
+
+    @Override
+    public E peek() {
+        for (ConcurrentLinkedQueue<E> stripe : this.stripes) {
+            E e = stripe.peek();
+            if (e != null)
+                return e;
+        }
+        return null;
+    }
+
+    @Override
+    public boolean isEmpty() {
+        for (ConcurrentLinkedQueue<E> stripe : this.stripes) {
+            if (!stripe.isEmpty())
+                return false;
+        }
+        return true;
+    }
+
+    /**
+     * Returns an estimate of the number of elements in this queue. The estimate is exact when the queue is not being
+     * modified concurrently.
+     */
+    @Override
+    public int size() {
+        return (int) Math.max(0L, Math.min(Integer.MAX_VALUE, this.count.sum()));
+    }
+
+    @Override
+    public int remainingCapacity() {
+        return Integer.MAX_VALUE;
+    }
+
+    @Override
+    public boolean remove(final Object o) {
+        if (o == null)
+            return false;
+        for (ConcurrentLinkedQueue<E> stripe : this.stripes) {
+            if (stripe.remove(o)) {
+                this.count.decrement();
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Override
+    public void clear() {
+        while (this.poll() != null) {}
+    }
+
+    @Override
+    public int drainTo(final Collection<? super E> c) {
+        return this.drainTo(c, Integer.MAX_VALUE);
+    }
+
+    @Override
+    public int drainTo(final Collection<? super E> c, final int maxElements) {
+        Preconditions.checkNotNull(c);
+        Preconditions.checkArgument(c != this, "cannot drain a queue into itself");
+
+        int n = 0;
+        E e;
+        while (n < maxElements && (e = this.poll()) != null) {
+            c.add(e);
+            n++;
+        }
+        return n;
+    }
+
+    /**
+     * Returns a weakly consistent iterator over the elements in this queue, one stripe at a time. The iterator does not
+     * support removal.
+     */
+    @Override
+    public Iterator<E> iterator() {
+        return Iterators.unmodifiableIterator(Iterators.concat(Iterators.transform(this.stripes.iterator(), new Function<ConcurrentLinkedQueue<E>, Iterator<E>>() {
+
+            @Override
+            public Iterator<E> apply(final ConcurrentLinkedQueue<E> stripe) {
+                return stripe.iterator();
+            }
+
+        })));
+    }
+
+}
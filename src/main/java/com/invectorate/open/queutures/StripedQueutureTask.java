@@ -0,0 +1,41 @@
+package com.invectorate.open.queutures;
+
+/**
+ * A {@link QueutureTask} for computations that put results into the {@link QueutureBox} from many threads at once.
+ * <p>
+ * Results are stored in a {@link StripedBlockingQueue}, so producer threads add results to separate stripes without
+ * contending on a single lock, and consumers take results from the stripes in turn. Results put by the same thread are
+ * delivered in the order that thread put them; results put by different threads may be delivered in any order.
+ * 
+ * @author Noah Fontes <nfontes@invectorate.com>
+ * 
+ * @param <V>
+ *            The type of object being generated by the computation.
+ */
+public class StripedQueutureTask<V> extends QueutureTask<V> {
+
+    /**
+     * Create a new {@code StripedQueutureTask} that will execute the given {@link Informable} as its computation, with
+     * one stripe per available processor.
+     * 
+     * @param informable
+     *            The computation to execute.
+     */
+    public StripedQueutureTask(final Informable<QueutureBox<V>> informable) {
+        super(informable, new StripedBlockingQueue<V>());
+    }
+
+    /**
+     * Create a new {@code StripedQueutureTask} that will execute the given {@link Informable} as its computation, with
+     * the given number of stripes.
+     * 
+     * @param informable
+     *            The computation to execute.
+     * @param stripes
+     *            The number of stripes; rounded up to a power of two.
+     */
+    public StripedQueutureTask(final Informable<QueutureBox<V>> informable, final int stripes) {
+        super(informable, new StripedBlockingQueue<V>(stripes));
+    }
+
+}
@@ -0,0 +1,40 @@
+package com.invectorate.open.queutures;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * A Flight Recorder event marking the successful cancellation of a {@link QueutureTask}.
+ * 
+ * @author Noah Fontes <nfontes@invectorate.com>
+ */
+@Name("com.invectorate.open.queutures.TaskCancellation")
+@Label("Queuture Task Cancellation")
+@Category("Queutures")
+@Description("Cancellation of a queuture")
+final class TaskCancellationEvent extends Event {
+
+    @Label("Task Class")
+    Class<?> taskClass;
+
+    @Label("Running")
+    @Description("Whether the computation had started running when it was cancelled")
+    boolean running;
+
+    @Label("May Interrupt If Running")
+    boolean mayInterruptIfRunning;
+
+    static void emit(final QueutureTask<?> task, final boolean running, final boolean mayInterruptIfRunning) {
+        TaskCancellationEvent event = new TaskCancellationEvent();
+        if (event.shouldCommit()) {
+            event.taskClass = task.getClass();
+            event.running = running;
+            event.mayInterruptIfRunning = mayInterruptIfRunning;
+            event.commit();
+        }
+    }
+
+}
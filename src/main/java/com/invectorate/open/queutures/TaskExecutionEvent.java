@@ -0,0 +1,49 @@
+package com.invectorate.open.queutures;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Threshold;
+
+/**
+ * A Flight Recorder event spanning the execution of a {@link QueutureTask}'s computation, from the time it starts
+ * running to the time it completes, fails, or observes its cancellation.
+ * 
+ * @author Noah Fontes <nfontes@invectorate.com>
+ */
+@Name("com.invectorate.open.queutures.TaskExecution")
+@Label("Queuture Task Execution")
+@Category("Queutures")
+@Description("Execution of the computation of a queuture")
+@StackTrace(false)
+@Threshold("20 ms")
+final class TaskExecutionEvent extends Event {
+
+    static final String COMPLETED = "Completed";
+    static final String FAILED = "Failed";
+    static final String CANCELLED = "Cancelled";
+
+    @Label("Task Class")
+    Class<?> taskClass;
+
+    @Label("Outcome")
+    String outcome;
+
+    @Label("Failure")
+    @Description("The class of the exception that caused the computation to fail, if any")
+    Class<?> failure;
+
+    void finish(final QueutureTask<?> task, final String outcome, final Throwable failure) {
+        this.end();
+        if (this.shouldCommit()) {
+            this.taskClass = task.getClass();
+            this.outcome = outcome;
+            this.failure = failure == null ? null : failure.getClass();
+            this.commit();
+        }
+    }
+
+}
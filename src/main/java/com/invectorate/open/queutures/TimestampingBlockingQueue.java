@@ -0,0 +1,236 @@
+package com.invectorate.open.queutures;
+
+import java.util.Collection;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Maps;
+import com.google.common.util.concurrent.ForwardingBlockingQueue;
+
+/**
+ * A first-in, first-out {@link BlockingQueue} that records how long each element spends in the queue.
+ * <p>
+ * Rather than wrapping every element to carry its timestamp, the time each element was added is kept in a separate
+ * sequence of {@code long}s indexed by the order in which elements were added. Because the delegate queue removes
+ * elements in the same order, the <i>n</i>th element removed is paired with the <i>n</i>th timestamp. Elements removed
+ * by {@link #clear()} are not recorded.
+ * <p>
+ * Timestamps are stored in fixed-size chunks, which are allocated as elements are added and dropped once every element
+ * they cover has been removed, so the memory used follows the number of buffered elements however large it grows. The
+ * chunks currently being written and read are cached, so only moving on to another chunk takes a lock.
+ * <p>
+ * The pairing is exact for a single producer, except that an element removed before its producer has written its
+ * timestamp is recorded as having spent no time in the queue. When several producers add elements at the same instant,
+ * an element may be paired with a neighbour's timestamp. Neither case affects the elements themselves.
+ * 
+ * @author Noah Fontes <nfontes@invectorate.com>
+ * 
+ * @param <E>
+ *            The type of elements held in this queue.
+ */
+final class TimestampingBlockingQueue<E> extends ForwardingBlockingQueue<E> {
+
+    private static final int CHUNK_BITS = 8;
+    private static final int CHUNK_SIZE = 1 << TimestampingBlockingQueue.CHUNK_BITS;
+
+    /** Marks a slot whose timestamp has not been written or has already been used. */
+    private static final long NO_TIMESTAMP = Long.MIN_VALUE;
+
+    private final BlockingQueue<E> delegate;
+    private final ImmutableList<LatencyHistogram> histograms;
+
+    private final AtomicLong added = new AtomicLong();
+    private final AtomicLong removed = new AtomicLong();
+
+    /** Chunks that still cover elements not yet removed, by chunk number; guarded by itself. */
+    private final Map<Long, Chunk> chunks = Maps.newHashMap();
+    /** The chunk most recently written by a producer. */
+    private volatile Chunk writing = null;
+    /** The chunk most recently read by a consumer. */
+    private volatile Chunk reading = null;
+
+    TimestampingBlockingQueue(final BlockingQueue<E> delegate, final Iterable<LatencyHistogram> histograms) {
+        this.delegate = delegate;
+        this.histograms = ImmutableList.copyOf(histograms);
+    }
+
+    @Override
+    protected BlockingQueue<E> delegate() {
+        return this.delegate;
+    }
+
+    private void stamp(final long now) {
+        long sequence = this.added.getAndIncrement();
+        Chunk chunk = this.writing;
+        if (chunk == null || chunk.number != sequence >>> TimestampingBlockingQueue.CHUNK_BITS) {
+            chunk = this.chunkForWrite(sequence);
+            if (chunk == null)
+                return;
+            this.writing = chunk;
+        }
+        chunk.stamps.set((int) sequence & (TimestampingBlockingQueue.CHUNK_SIZE - 1), now);
+    }
+
+    /**
+     * Removes the timestamp for the next element to be removed, or returns {@link #NO_TIMESTAMP} if its producer has
+     * yet to write it.
+     */
+    private long unstamp() {
+        long sequence = this.removed.getAndIncrement();
+        Chunk chunk = this.reading;
+        if (chunk == null || chunk.number != sequence >>> TimestampingBlockingQueue.CHUNK_BITS) {
+            chunk = this.chunkForRead(sequence);
+            this.reading = chunk;
+        }
+        long then = chunk.stamps.getAndSet((int) sequence & (TimestampingBlockingQueue.CHUNK_SIZE - 1), TimestampingBlockingQueue.NO_TIMESTAMP);
+        if (chunk.unread.decrementAndGet() == 0) {
+            synchronized (this.chunks) {
+                this.chunks.remove(chunk.number);
+            }
+        }
+        return then;
+    }
+
+    /**
+     * Returns the chunk covering the given sequence number, creating it if necessary, or {@code null} if its element
+     * has already been removed (and the chunk may be gone).
+     */
+    private Chunk chunkForWrite(final long sequence) {
+        synchronized (this.chunks) {
+            if (this.removed.get() > sequence)
+                return null;
+            return this.chunk(sequence >>> TimestampingBlockingQueue.CHUNK_BITS);
+        }
+    }
+
+    private Chunk chunkForRead(final long sequence) {
+        synchronized (this.chunks) {
+            return this.chunk(sequence >>> TimestampingBlockingQueue.CHUNK_BITS);
+        }
+    }
+
+    private Chunk chunk(final long number) {
+        Chunk chunk = this.chunks.get(number);
+        if (chunk == null) {
+            chunk = new Chunk(number);
+            this.chunks.put(number, chunk);
+        }
+        return chunk;
+    }
+
+    private E recorded(final E e) {
+        if (e != null) {
+            long then = this.unstamp();
+            /* If we beat the producer to the timestamp, the element was only just added. */
+            long dwell = then == TimestampingBlockingQueue.NO_TIMESTAMP ? 0 : System.nanoTime() - then;
+            for (LatencyHistogram histogram : this.histograms)
+                histogram.recordNanos(dwell);
+        }
+        return e;
+    }
+
+    private E discarded(final E e) {
+        if (e != null)
+            this.unstamp();
+        return e;
+    }
+
+    @Override
+    public void put(final E e) throws InterruptedException {
+        long now = System.nanoTime();
+        this.delegate.put(e);
+        this.stamp(now);
+    }
+
+    @Override
+    public boolean offer(final E e) {
+        long now = System.nanoTime();
+        if (!this.delegate.offer(e))
+            return false;
+        this.stamp(now);
+        return true;
+    }
+
+    @Override
+    public boolean offer(final E e, final long timeout, final TimeUnit unit) throws InterruptedException {
+        long now = System.nanoTime();
+        if (!this.delegate.offer(e, timeout, unit))
+            return false;
+        this.stamp(now);
+        return true;
+    }
+
+    @Override
+    public boolean add(final E e) {
+        if (this.offer(e))
+            return true;
+        throw new IllegalStateException("Queue full");
+    }
+
+    @Override
+    public boolean addAll(final Collection<? extends E> collection) {
+        return this.standardAddAll(collection);
+    }
+
+    @Override
+    public E poll() {
+        return this.recorded(this.delegate.poll());
+    }
+
+    @Override
+    public E poll(final long timeout, final TimeUnit unit) throws InterruptedException {
+        return this.recorded(this.delegate.poll(timeout, unit));
+    }
+
+    @Override
+    public E take() throws InterruptedException {
+        return this.recorded(this.delegate.take());
+    }
+
+    @Override
+    public E remove() {
+        return this.recorded(this.delegate.remove());
+    }
+
+    @Override
+    public void clear() {
+        while (this.discarded(this.delegate.poll()) != null) {}
+    }
+
+    @Override
+    public int drainTo(final Collection<? super E> c) {
+        return this.drainTo(c, Integer.MAX_VALUE);
+    }
+
+    @Override
+    public int drainTo(final Collection<? super E> c, final int maxElements) {
+        int n = 0;
+        E e;
+        while (n < maxElements && (e = this.poll()) != null) {
+            c.add(e);
+            n++;
+        }
+        return n;
+    }
+
+    private static final class Chunk {
+
+        final long number;
+        final AtomicLongArray stamps = new AtomicLongArray(TimestampingBlockingQueue.CHUNK_SIZE);
+        /** The number of elements covered by this chunk that have yet to be removed. */
+        final AtomicInteger unread = new AtomicInteger(TimestampingBlockingQueue.CHUNK_SIZE);
+
+        Chunk(final long number) {
+            this.number = number;
+            for (int i = 0; i < TimestampingBlockingQueue.CHUNK_SIZE; i++)
+                this.stamps.set(i, TimestampingBlockingQueue.NO_TIMESTAMP);
+        }
+
+    }
+
+}
@@ -0,0 +1,84 @@
+package com.invectorate.open.queutures;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.google.common.base.Preconditions;
+
+/**
+ * A lock-free token bucket.
+ * <p>
+ * Rather than refilling tokens on a timer, the bucket tracks a single virtual timestamp: the point in time at which the
+ * bucket would be empty had no tokens been taken since. Taking a token advances the timestamp by one emission interval,
+ * and a caller whose token lies in the future sleeps in its own thread until then. No background thread is required,
+ * so any number of buckets may be live at once.
+ * 
+ * @author Noah Fontes <nfontes@invectorate.com>
+ */
+final class TokenBucket {
+
+    private final long intervalNanos;
+    private final long burstNanos;
+    private final AtomicLong emptyAt;
+
+    /**
+     * @param permitsPerSecond
+     *            The rate at which tokens become available.
+     * @param burst
+     *            The number of tokens the bucket may hold when idle.
+     */
+    TokenBucket(final double permitsPerSecond, final int burst) {
+        Preconditions.checkArgument(permitsPerSecond > 0.0, "permitsPerSecond must be positive");
+        Preconditions.checkArgument(burst > 0, "burst must be positive");
+
+        this.intervalNanos = Math.max(1L, (long) (TimeUnit.SECONDS.toNanos(1) / permitsPerSecond));
+        this.burstNanos = this.intervalNanos * burst;
+        this.emptyAt = new AtomicLong(System.nanoTime() - this.burstNanos);
+    }
+
+    /**
+     * Takes a token, sleeping until it becomes available.
+     * 
+     * @throws InterruptedException
+     *             If the current thread is interrupted while waiting for the token. The token is consumed regardless.
+     */
+    void acquire() throws InterruptedException {
+        long wait = this.reserve(Long.MAX_VALUE);
+        if (wait > 0)
+            TimeUnit.NANOSECONDS.sleep(wait);
+    }
+
+    /**
+     * Takes a token if it will become available within the given time, sleeping until it does.
+     * 
+     * @return {@code true} if a token was taken, or {@code false} if none would become available in time.
+     * 
+     * @throws InterruptedException
+     *             If the current thread is interrupted while waiting for the token. The token is consumed regardless.
+     */
+    boolean tryAcquire(final long timeoutNanos) throws InterruptedException {
+        long wait = this.reserve(timeoutNanos);
+        if (wait < 0)
+            return false;
+        if (wait > 0)
+            TimeUnit.NANOSECONDS.sleep(wait);
+        return true;
+    }
+
+    /**
+     * Reserves a token, returning the time to wait for it, or -1 if the wait would exceed the given limit.
+     */
+    private long reserve(final long limitNanos) {
+        for (;;) {
+            long now = System.nanoTime();
+            long current = this.emptyAt.get();
+            long next = Math.max(current, now - this.burstNanos) + this.intervalNanos;
+            long wait = Math.max(0L, next - now);
+            if (wait > limitNanos)
+                return -1L;
+            if (this.emptyAt.compareAndSet(current, next))
+                return wait;
+        }
+    }
+
+}
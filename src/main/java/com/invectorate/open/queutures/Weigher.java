@@ -0,0 +1,29 @@
+package com.invectorate.open.queutures;
+
+/**
+ * Calculates the weight of a result held by a {@link Queuture}, for the purpose of limiting how much memory buffered
+ * results may occupy.
+ * <p>
+ * Weights are measured in arbitrary units (for example, estimated bytes). The weight of an object must not change while
+ * it is buffered.
+ * 
+ * @see BudgetedQueutureExecutorService
+ * 
+ * @author Noah Fontes <nfontes@invectorate.com>
+ * 
+ * @param <V>
+ *            The type of object being weighed.
+ */
+public interface Weigher<V> {
+
+    /**
+     * Returns the weight of the given object.
+     * 
+     * @param object
+     *            The object to weigh.
+     * 
+     * @return The weight of the object; must be non-negative.
+     */
+    public int weigh(V object);
+
+}
@@ -0,0 +1,101 @@
+package com.invectorate.open.queutures;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * A {@link Queuture} that groups the results of another queuture into windows.
+ * <p>
+ * A window opens when its first result is read and closes once it holds the maximum number of results or once the
+ * window time has elapsed, whichever happens first. All waiting takes place in the consuming thread.
+ * 
+ * @see Queutures#window(Queuture, int, long, TimeUnit)
+ * 
+ * @author Noah Fontes <nfontes@invectorate.com>
+ * 
+ * @param <V>
+ *            The type of object being generated by the computation.
+ */
+final class WindowedQueuture<V> implements Queuture<List<V>> {
+
+    private final Queuture<V> source;
+    private final int maxSize;
+    private final long windowNanos;
+
+    WindowedQueuture(final Queuture<V> source, final int maxSize, final long windowNanos) {
+        this.source = source;
+        this.maxSize = maxSize;
+        this.windowNanos = windowNanos;
+    }
+
+    @Override
+    public boolean cancel(final boolean mayInterruptIfRunning) {
+        return this.source.cancel(mayInterruptIfRunning);
+    }
+
+    @Override
+    public boolean isCancelled() {
+        return this.source.isCancelled();
+    }
+
+    @Override
+    public boolean isDone() {
+        return this.source.isDone();
+    }
+
+    @Override
+    public List<V> next() throws InterruptedException, ExecutionException {
+        V first = this.source.next();
+        if (first == null)
+            return null;
+        return this.fill(first, System.nanoTime() + this.windowNanos);
+    }
+
+    @Override
+    public List<V> next(final long timeout, final TimeUnit unit) throws TimeoutException, InterruptedException, ExecutionException {
+        long deadline = System.nanoTime() + unit.toNanos(timeout);
+        V first = this.source.next(timeout, unit);
+        if (first == null)
+            return null;
+
+        /* If the caller runs out of time before the window closes, deliver what we have so far. */
+        long windowDeadline = System.nanoTime() + this.windowNanos;
+        return this.fill(first, deadline - windowDeadline < 0 ? deadline : windowDeadline);
+    }
+
+    private List<V> fill(final V first, final long deadline) {
+        List<V> window = new ArrayList<V>(Math.min(this.maxSize, 16));
+        window.add(first);
+
+        while (window.size() < this.maxSize) {
+            long remaining = deadline - System.nanoTime();
+            if (remaining <= 0)
+                break;
+
+            /*
+             * Once we hold results, failures that occur while filling the window must not discard them. Deliver the
+             * partial window instead; the failure will be observed again by the next read from the source.
+             */
+            V next;
+            try {
+                next = this.source.next(remaining, TimeUnit.NANOSECONDS);
+            } catch (TimeoutException te) {
+                break;
+            } catch (InterruptedException ie) {
+                Thread.currentThread().interrupt();
+                break;
+            } catch (ExecutionException ee) {
+                break;
+            }
+            if (next == null)
+                break;
+            window.add(next);
+        }
+
+        return window;
+    }
+
+}
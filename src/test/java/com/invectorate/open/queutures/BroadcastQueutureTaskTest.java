@@ -0,0 +1,167 @@
+package com.invectorate.open.queutures;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+import org.hamcrest.CoreMatchers;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import com.google.common.base.Throwables;
+
+@RunWith(JUnit4.class)
+public class BroadcastQueutureTaskTest {
+
+    @Rule
+    public ExpectedException exceptionRule = ExpectedException.none();
+
+    @Test
+    public void everySubscriberReceivesEveryResult() throws Exception {
+        BroadcastQueutureTask<Integer> task = new BroadcastQueutureTask<>(BroadcastQueutureTaskTest.newCountingInformable(1000), 16);
+
+        ExecutorService executor = Executors.newCachedThreadPool();
+        List<Future<List<Integer>>> results = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            final Queuture<Integer> subscription = task.subscribe();
+            results.add(executor.submit(new Callable<List<Integer>>() {
+
+                @Override
+                public List<Integer> call() throws Exception {
+                    List<Integer> received = new ArrayList<>();
+                    Integer v;
+                    while ((v = subscription.next()) != null)
+                        received.add(v);
+                    return received;
+                }
+
+            }));
+        }
+
+        task.run();
+
+        for (Future<List<Integer>> result : results) {
+            List<Integer> received = result.get();
+            Assert.assertEquals(1000, received.size());
+            for (int i = 0; i < 1000; i++)
+                Assert.assertEquals(Integer.valueOf(i), received.get(i));
+        }
+        Assert.assertTrue(task.isDone());
+        executor.shutdown();
+    }
+
+    @Test
+    public void subscribersJoiningWhileRunningMissNothingAfterTheyJoin() throws Exception {
+        final BroadcastQueutureTask<Integer> task = new BroadcastQueutureTask<>(BroadcastQueutureTaskTest.newCountingInformable(20000), 4);
+
+        ExecutorService executor = Executors.newCachedThreadPool();
+        try {
+            List<Future<List<Integer>>> results = new ArrayList<>();
+            results.add(BroadcastQueutureTaskTest.drain(executor, task.subscribe()));
+            executor.execute(task);
+            for (int i = 0; i < 20; i++) {
+                results.add(BroadcastQueutureTaskTest.drain(executor, task.subscribe()));
+                Thread.yield();
+            }
+
+            for (Future<List<Integer>> result : results) {
+                List<Integer> received = result.get();
+                for (int i = 1; i < received.size(); i++)
+                    Assert.assertEquals(received.get(i - 1) + 1, received.get(i).intValue());
+                if (!received.isEmpty())
+                    Assert.assertEquals(19999, received.get(received.size() - 1).intValue());
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void slowSubscriberSkipsAheadWhenOverrun() throws InterruptedException, ExecutionException {
+        BroadcastQueutureTask<Integer> task = new BroadcastQueutureTask<>(BroadcastQueutureTaskTest.newCountingInformable(100), 8, BroadcastQueutureTask.OverrunPolicy.SKIP);
+        BroadcastQueutureTask<Integer>.Subscription subscription = task.subscribe();
+
+        task.run();
+
+        for (int i = 92; i < 100; i++)
+            Assert.assertEquals(Integer.valueOf(i), subscription.next());
+        Assert.assertNull(subscription.next());
+        Assert.assertEquals(92, subscription.getSkippedCount());
+    }
+
+    @Test
+    public void unsubscribedSubscriberDoesNotHoldBackProducer() throws InterruptedException, ExecutionException {
+        BroadcastQueutureTask<Integer> task = new BroadcastQueutureTask<>(BroadcastQueutureTaskTest.newCountingInformable(100), 8);
+        Queuture<Integer> abandoned = task.subscribe();
+        Assert.assertTrue(abandoned.cancel(false));
+
+        task.run();
+
+        Assert.assertTrue(task.isDone());
+        Assert.assertTrue(abandoned.isCancelled());
+
+        this.exceptionRule.expect(CancellationException.class);
+        abandoned.next();
+    }
+
+    @Test
+    public void exceptionThrownWhileRunningIsPassedToEverySubscriber() throws InterruptedException, ExecutionException {
+        BroadcastQueutureTask<String> task = new BroadcastQueutureTask<>(new Informable<QueutureBox<String>>() {
+
+            @Override
+            public void inform(final QueutureBox<String> box) {
+                throw new IllegalStateException("I AM A BANANA");
+            }
+
+        }, 8);
+        Queuture<String> subscription = task.subscribe();
+
+        task.run();
+
+        this.exceptionRule.expect(ExecutionException.class);
+        this.exceptionRule.expectCause(CoreMatchers.isA(IllegalStateException.class));
+        subscription.next();
+    }
+
+    private static Future<List<Integer>> drain(final ExecutorService executor, final BroadcastQueutureTask<Integer>.Subscription subscription) {
+        return executor.submit(new Callable<List<Integer>>() {
+
+            @Override
+            public List<Integer> call() throws Exception {
+                List<Integer> received = new ArrayList<>();
+                Integer v;
+                while ((v = subscription.next()) != null)
+                    received.add(v);
+                Assert.assertEquals(0, subscription.getSkippedCount());
+                return received;
+            }
+
+        });
+    }
+
+    protected static Informable<QueutureBox<Integer>> newCountingInformable(final int count) {
+        return new Informable<QueutureBox<Integer>>() {
+
+            @Override
+            public void inform(final QueutureBox<Integer> box) {
+                try {
+                    for (int i = 0; i < count; i++)
+                        box.put(i);
+                } catch (InterruptedException ie) {
+                    Throwables.propagate(ie);
+                }
+            }
+
+        };
+    }
+
+}
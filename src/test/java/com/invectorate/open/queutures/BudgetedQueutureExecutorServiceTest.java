@@ -0,0 +1,149 @@
+package com.invectorate.open.queutures;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import com.google.common.base.Throwables;
+
+@RunWith(JUnit4.class)
+public class BudgetedQueutureExecutorServiceTest {
+
+    private static Informable<QueutureBox<String>> newProducer(final int count, final CountDownLatch produced) {
+        return new Informable<QueutureBox<String>>() {
+
+            @Override
+            public void inform(final QueutureBox<String> box) {
+                try {
+                    for (int i = 0; i < count; i++) {
+                        box.put("result " + i);
+                        produced.countDown();
+                    }
+                } catch (InterruptedException ie) {
+                    Throwables.propagate(ie);
+                }
+            }
+
+        };
+    }
+
+    @Test
+    public void budgetIsSharedAcrossQueutures() throws InterruptedException, ExecutionException {
+        ExecutorService delegate = Executors.newCachedThreadPool();
+        BudgetedQueutureExecutorService executorService = new BudgetedQueutureExecutorService(delegate, 4, 10);
+        try {
+            CountDownLatch produced = new CountDownLatch(10);
+            Queuture<String> a = executorService.submit(newProducer(5, produced));
+            Queuture<String> b = executorService.submit(newProducer(5, produced));
+
+            /* Only four results fit in the budget, regardless of which queuture produced them. */
+            Assert.assertFalse(produced.await(200, TimeUnit.MILLISECONDS));
+            Assert.assertEquals(6, produced.getCount());
+            Assert.assertEquals(0, executorService.getAvailableBudget());
+
+            int received = 0;
+            while (a.next() != null)
+                received++;
+            while (b.next() != null)
+                received++;
+
+            Assert.assertEquals(10, received);
+            Assert.assertEquals(4, executorService.getAvailableBudget());
+        } finally {
+            delegate.shutdownNow();
+        }
+    }
+
+    @Test
+    public void weigherAndOverflowPolicyRejectResultsThatDoNotFit() throws InterruptedException, ExecutionException {
+        ExecutorService delegate = Executors.newSingleThreadExecutor();
+        Weigher<Object> weigher = new Weigher<Object>() {
+
+            @Override
+            public int weigh(final Object object) {
+                return ((String) object).length();
+            }
+
+        };
+        BudgetedQueutureExecutorService executorService = new BudgetedQueutureExecutorService(delegate, 10, weigher, OverflowPolicy.dropNewest(), 10);
+        try {
+            Queuture<String> queuture = executorService.submit(new Informable<QueutureBox<String>>() {
+
+                @Override
+                public void inform(final QueutureBox<String> box) {
+                    try {
+                        box.put("abcd");
+                        box.put("efghijk");
+                        box.put("lmnopq");
+                    } catch (InterruptedException ie) {
+                        Throwables.propagate(ie);
+                    }
+                }
+
+            });
+
+            delegate.shutdown();
+            Assert.assertTrue(delegate.awaitTermination(1, TimeUnit.SECONDS));
+
+            Assert.assertEquals("abcd", queuture.next());
+            Assert.assertEquals("lmnopq", queuture.next());
+            Assert.assertNull(queuture.next());
+            Assert.assertEquals(1, ((QueutureTask<String>) queuture).getDroppedCount());
+            Assert.assertEquals(10, executorService.getAvailableBudget());
+        } finally {
+            delegate.shutdownNow();
+        }
+    }
+
+    @Test
+    public void cancellationReturnsBufferedResultsToBudget() throws InterruptedException {
+        ExecutorService delegate = Executors.newSingleThreadExecutor();
+        BudgetedQueutureExecutorService executorService = new BudgetedQueutureExecutorService(delegate, 3, 10);
+        try {
+            CountDownLatch produced = new CountDownLatch(3);
+            Queuture<String> queuture = executorService.submit(newProducer(100, produced));
+
+            Assert.assertTrue(produced.await(1, TimeUnit.SECONDS));
+            queuture.cancel(true);
+
+            Assert.assertEquals(3, executorService.getAvailableBudget());
+            Assert.assertEquals(0, executorService.getActiveTaskCount());
+        } finally {
+            delegate.shutdownNow();
+        }
+    }
+
+    @Test
+    public void submissionsBeyondMaxActiveTasksAreRejected() {
+        ExecutorService delegate = Executors.newCachedThreadPool();
+        BudgetedQueutureExecutorService executorService = new BudgetedQueutureExecutorService(delegate, 1, 2);
+        try {
+            /* Neither producer can finish, since only one result fits in the budget. */
+            Queuture<String> a = executorService.submit(newProducer(2, new CountDownLatch(2)));
+            Queuture<String> b = executorService.submit(newProducer(2, new CountDownLatch(2)));
+
+            try {
+                executorService.submit(newProducer(2, new CountDownLatch(2)));
+                Assert.fail("expected submission to be rejected");
+            } catch (RejectedExecutionException e) {}
+
+            a.cancel(true);
+            Assert.assertEquals(1, executorService.getActiveTaskCount());
+
+            Queuture<String> c = executorService.submit(newProducer(1, new CountDownLatch(1)));
+            b.cancel(true);
+            c.cancel(true);
+        } finally {
+            delegate.shutdownNow();
+        }
+    }
+
+}
@@ -0,0 +1,218 @@
+package com.invectorate.open.queutures;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import com.google.common.base.Throwables;
+
+@RunWith(JUnit4.class)
+public class ByteBufferQueutureTaskTest {
+
+    @Test
+    public void slotsAreDeliveredAndReturnedToThePool() throws InterruptedException, ExecutionException {
+        final int count = 1000;
+        final ByteBufferPool pool = new ByteBufferPool(4, 16, true);
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            ByteBufferQueutureTask queuture = new ByteBufferQueutureTask(new Informable<QueutureBox<ByteBufferSlot>>() {
+
+                @Override
+                public void inform(final QueutureBox<ByteBufferSlot> box) {
+                    try {
+                        for (int i = 0; i < count; i++) {
+                            ByteBufferSlot slot = pool.claim();
+                            slot.buffer().putInt(i).putInt(-i);
+                            if (!box.put(slot))
+                                return;
+                        }
+                    } catch (InterruptedException ie) {
+                        Throwables.propagate(ie);
+                    }
+                }
+
+            }, pool);
+            executor.execute(queuture);
+
+            int expected = 0;
+            ByteBufferSlot slot;
+            while ((slot = queuture.next()) != null) {
+                ByteBuffer contents = slot.contents();
+                Assert.assertTrue(contents.isReadOnly());
+                Assert.assertTrue(contents.isDirect());
+                Assert.assertEquals(8, contents.remaining());
+                Assert.assertEquals(expected, contents.getInt());
+                Assert.assertEquals(-expected, contents.getInt());
+                slot.release();
+                expected++;
+            }
+            Assert.assertEquals(count, expected);
+            Assert.assertEquals(pool.capacity(), pool.getAvailableCount());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void unreadSlotsAreReleasedOnCancellation() throws InterruptedException, ExecutionException {
+        final ByteBufferPool pool = new ByteBufferPool(4, 16);
+        final CountDownLatch full = new CountDownLatch(1);
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            ByteBufferQueutureTask queuture = new ByteBufferQueutureTask(new Informable<QueutureBox<ByteBufferSlot>>() {
+
+                @Override
+                public void inform(final QueutureBox<ByteBufferSlot> box) {
+                    try {
+                        for (;;) {
+                            ByteBufferSlot slot = pool.claim(10, TimeUnit.MILLISECONDS);
+                            if (slot == null) {
+                                full.countDown();
+                                if (box.isCancelled())
+                                    return;
+                                continue;
+                            }
+                            slot.buffer().put((byte) 1);
+                            if (!box.put(slot))
+                                return;
+                        }
+                    } catch (InterruptedException ie) {
+                        Throwables.propagate(ie);
+                    }
+                }
+
+            }, pool);
+            executor.execute(queuture);
+
+            Assert.assertTrue(full.await(10, TimeUnit.SECONDS));
+            Assert.assertEquals(0, pool.getAvailableCount());
+            Assert.assertTrue(queuture.cancel(false));
+
+            executor.shutdown();
+            Assert.assertTrue(executor.awaitTermination(10, TimeUnit.SECONDS));
+            Assert.assertEquals(pool.capacity(), pool.getAvailableCount());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void cancellingDuringPutReleasesEachSlotOnce() throws InterruptedException {
+        final ByteBufferPool pool = new ByteBufferPool(2, 16);
+        final AtomicReference<Throwable> failure = new AtomicReference<Throwable>();
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            for (int run = 0; run < 2000; run++) {
+                ByteBufferQueutureTask queuture = new ByteBufferQueutureTask(new Informable<QueutureBox<ByteBufferSlot>>() {
+
+                    @Override
+                    public void inform(final QueutureBox<ByteBufferSlot> box) {
+                        try {
+                            for (;;) {
+                                ByteBufferSlot slot = pool.claim(10, TimeUnit.MILLISECONDS);
+                                if (slot == null) {
+                                    if (box.isCancelled())
+                                        return;
+                                    continue;
+                                }
+                                slot.buffer().put((byte) 1);
+                                if (!box.put(slot))
+                                    return;
+                            }
+                        } catch (Throwable t) {
+                            failure.compareAndSet(null, t);
+                        }
+                    }
+
+                }, pool);
+                executor.execute(queuture);
+
+                ByteBufferSlot slot = queuture.next();
+                if (slot != null)
+                    slot.release();
+                try {
+                    queuture.cancel(false);
+                } catch (Throwable t) {
+                    failure.compareAndSet(null, t);
+                }
+
+                /* Wait for the producer to notice. */
+                executor.submit(new Runnable() {
+
+                    @Override
+                    public void run() {}
+
+                }).get(10, TimeUnit.SECONDS);
+                Assert.assertNull(failure.get());
+                Assert.assertEquals(pool.capacity(), pool.getAvailableCount());
+            }
+        } catch (ExecutionException | TimeoutException e) {
+            throw new AssertionError(e);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void discardReleasesSlotsLeftInCompletedTask() throws InterruptedException, ExecutionException {
+        final ByteBufferPool pool = new ByteBufferPool(4, 16);
+        ByteBufferQueutureTask queuture = new ByteBufferQueutureTask(new Informable<QueutureBox<ByteBufferSlot>>() {
+
+            @Override
+            public void inform(final QueutureBox<ByteBufferSlot> box) {
+                try {
+                    for (int i = 0; i < 3; i++) {
+                        ByteBufferSlot slot = pool.claim();
+                        slot.buffer().put((byte) i);
+                        box.put(slot);
+                    }
+                } catch (InterruptedException ie) {
+                    Throwables.propagate(ie);
+                }
+            }
+
+        }, pool);
+        queuture.run();
+
+        queuture.next().release();
+        Assert.assertFalse(queuture.cancel(true));
+        Assert.assertEquals(2, pool.getAvailableCount());
+
+        queuture.discard();
+        Assert.assertEquals(pool.capacity(), pool.getAvailableCount());
+        Assert.assertNull(queuture.next());
+    }
+
+    @Test
+    public void slotsEnforceTheirLifecycle() throws InterruptedException {
+        ByteBufferPool pool = new ByteBufferPool(1, 16);
+        ByteBufferSlot slot = pool.claim();
+        Assert.assertNull(pool.tryClaim());
+        try {
+            slot.contents();
+            Assert.fail();
+        } catch (IllegalStateException e) {}
+
+        slot.release();
+        Assert.assertEquals(1, pool.getAvailableCount());
+        try {
+            slot.release();
+            Assert.fail();
+        } catch (IllegalStateException e) {}
+        try {
+            slot.buffer();
+            Assert.fail();
+        } catch (IllegalStateException e) {}
+    }
+
+}
@@ -0,0 +1,135 @@
+package com.invectorate.open.queutures;
+
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import com.google.common.base.Throwables;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
+
+@RunWith(JUnit4.class)
+public class CachingQueutureExecutorServiceTest {
+
+    private static Informable<QueutureBox<Integer>> newCountingInformable(final int count, final AtomicInteger runs, final CountDownLatch gate) {
+        return new Informable<QueutureBox<Integer>>() {
+
+            @Override
+            public void inform(final QueutureBox<Integer> box) {
+                runs.incrementAndGet();
+                try {
+                    for (int i = 0; i < count; i++) {
+                        box.put(i);
+                        if (i == 0)
+                            gate.await();
+                    }
+                } catch (InterruptedException ie) {
+                    Throwables.propagate(ie);
+                }
+            }
+
+        };
+    }
+
+    private static <V> List<V> drain(final Queuture<V> queuture) throws InterruptedException, ExecutionException {
+        List<V> results = Lists.newArrayList();
+        V v;
+        while ((v = queuture.next()) != null)
+            results.add(v);
+        return results;
+    }
+
+    @Test
+    public void submissionsWithTheSameKeyShareOneComputation() throws InterruptedException, ExecutionException {
+        ExecutorService delegate = Executors.newCachedThreadPool();
+        try {
+            CachingQueutureExecutorService<String> executorService = new CachingQueutureExecutorService<String>(delegate, 16, 10, 1, TimeUnit.MINUTES);
+            AtomicInteger runs = new AtomicInteger();
+            CountDownLatch gate = new CountDownLatch(1);
+
+            Queuture<Integer> first = executorService.submit("key", newCountingInformable(5, runs, gate));
+            Assert.assertEquals(Integer.valueOf(0), first.next());
+
+            /* A late subscriber replays what the first one has already seen, then follows along. */
+            Queuture<Integer> second = executorService.submit("key", newCountingInformable(5, runs, gate));
+            gate.countDown();
+
+            Assert.assertEquals(ImmutableList.of(1, 2, 3, 4), drain(first));
+            Assert.assertEquals(ImmutableList.of(0, 1, 2, 3, 4), drain(second));
+
+            /* And a subscriber that arrives after completion replays everything. */
+            Queuture<Integer> third = executorService.submit("key", newCountingInformable(5, runs, gate));
+            Assert.assertEquals(ImmutableList.of(0, 1, 2, 3, 4), drain(third));
+
+            Assert.assertEquals(1, runs.get());
+        } finally {
+            delegate.shutdownNow();
+        }
+    }
+
+    @Test
+    public void finishedComputationsAreEvictedBySizeAndAge() throws InterruptedException, ExecutionException {
+        ExecutorService delegate = Executors.newCachedThreadPool();
+        try {
+            CachingQueutureExecutorService<String> executorService = new CachingQueutureExecutorService<String>(delegate, 16, 1, 50, TimeUnit.MILLISECONDS);
+            AtomicInteger runs = new AtomicInteger();
+            CountDownLatch gate = new CountDownLatch(0);
+
+            drain(executorService.submit("a", newCountingInformable(1, runs, gate)));
+            drain(executorService.submit("b", newCountingInformable(1, runs, gate)));
+            /* Completion callbacks may still be running after the last result has been read. */
+            while (executorService.size() > 1)
+                Thread.sleep(1);
+
+            /* "a" was evicted to make room for "b", so it runs again. */
+            drain(executorService.submit("a", newCountingInformable(1, runs, gate)));
+            Assert.assertEquals(3, runs.get());
+
+            Thread.sleep(100);
+            drain(executorService.submit("a", newCountingInformable(1, runs, gate)));
+            Assert.assertEquals(4, runs.get());
+        } finally {
+            delegate.shutdownNow();
+        }
+    }
+
+    @Test
+    public void failedComputationsAreNotCached() throws InterruptedException {
+        ExecutorService delegate = Executors.newCachedThreadPool();
+        try {
+            CachingQueutureExecutorService<String> executorService = new CachingQueutureExecutorService<String>(delegate, 16, 10, 1, TimeUnit.MINUTES);
+            final AtomicInteger runs = new AtomicInteger();
+            Informable<QueutureBox<Integer>> failing = new Informable<QueutureBox<Integer>>() {
+
+                @Override
+                public void inform(final QueutureBox<Integer> box) {
+                    runs.incrementAndGet();
+                    throw new IllegalStateException();
+                }
+
+            };
+
+            for (int i = 0; i < 2; i++) {
+                try {
+                    drain(executorService.submit("key", failing));
+                    Assert.fail("expected computation to fail");
+                } catch (ExecutionException e) {
+                    Assert.assertTrue(e.getCause() instanceof IllegalStateException);
+                }
+            }
+            Assert.assertEquals(2, runs.get());
+        } finally {
+            delegate.shutdownNow();
+        }
+    }
+
+}
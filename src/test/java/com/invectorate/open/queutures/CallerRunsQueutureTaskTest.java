@@ -0,0 +1,182 @@
+package com.invectorate.open.queutures;
+
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import com.google.common.base.Throwables;
+import com.google.common.collect.Queues;
+
+@RunWith(JUnit4.class)
+public class CallerRunsQueutureTaskTest {
+
+    @Test
+    public void firstConsumerRunsComputationInline() throws InterruptedException, ExecutionException {
+        final AtomicReference<Thread> producer = new AtomicReference<>();
+        CallerRunsQueutureTask<String> queuture = CallerRunsQueutureTaskTest.newCallerRunsQueutureTask(producer, new SynchronousQueue<String>());
+
+        Assert.assertEquals("Hello!", queuture.next());
+        Assert.assertSame(Thread.currentThread(), producer.get());
+        Assert.assertTrue(queuture.isDone());
+
+        Assert.assertEquals("Goodbye!", queuture.next());
+        Assert.assertEquals("Aloha!", queuture.next());
+        Assert.assertNull(queuture.next());
+
+        /* The executor's attempt to run the task does nothing. */
+        queuture.run();
+        Assert.assertNull(queuture.next());
+    }
+
+    @Test
+    public void boundedQueueOverflowsDuringInlineRunInOrder() throws InterruptedException, ExecutionException {
+        CallerRunsQueutureTask<String> queuture = CallerRunsQueutureTaskTest.newCallerRunsQueutureTask(new AtomicReference<Thread>(), Queues.<String> newLinkedBlockingQueue(1));
+
+        Assert.assertEquals("Hello!", queuture.next());
+        Assert.assertEquals("Goodbye!", queuture.next());
+        Assert.assertEquals("Aloha!", queuture.next());
+        Assert.assertNull(queuture.next());
+    }
+
+    @Test
+    public void consumerDoesNotRunStartedComputation() throws InterruptedException, ExecutionException {
+        final AtomicReference<Thread> producer = new AtomicReference<>();
+        CallerRunsQueutureTask<String> queuture = CallerRunsQueutureTaskTest.newCallerRunsQueutureTask(producer, Queues.<String> newLinkedBlockingQueue());
+
+        Thread thread = new Thread(queuture);
+        thread.start();
+        thread.join();
+
+        Assert.assertEquals("Hello!", queuture.next());
+        Assert.assertSame(thread, producer.get());
+    }
+
+    @Test
+    public void timedNextDoesNotRunComputationInline() throws InterruptedException, ExecutionException, TimeoutException {
+        final AtomicReference<Thread> producer = new AtomicReference<>();
+        CallerRunsQueutureTask<String> queuture = CallerRunsQueutureTaskTest.newCallerRunsQueutureTask(producer, Queues.<String> newLinkedBlockingQueue());
+
+        try {
+            queuture.next(10, TimeUnit.MILLISECONDS);
+            Assert.fail();
+        } catch (TimeoutException e) {}
+        Assert.assertNull(producer.get());
+
+        queuture.run();
+        Assert.assertEquals("Hello!", queuture.next(10, TimeUnit.MILLISECONDS));
+    }
+
+    @Test
+    public void inlineRunFailsWhenOverflowBoundIsExceeded() throws InterruptedException {
+        CallerRunsQueutureTask<String> queuture = new CallerRunsQueutureTask<>(CallerRunsQueutureTaskTest.newInformable(new AtomicReference<Thread>()), Queues.<String> newLinkedBlockingQueue(1), 1);
+
+        try {
+            queuture.next();
+            Assert.fail();
+        } catch (ExecutionException e) {
+            Assert.assertTrue(e.getCause() instanceof IllegalStateException);
+        }
+    }
+
+    @Test
+    public void cancellingInlineRunDoesNotInterruptConsumer() throws InterruptedException {
+        final CountDownLatch running = new CountDownLatch(1);
+        final CallerRunsQueutureTask<Integer> queuture = new CallerRunsQueutureTask<>(new Informable<QueutureBox<Integer>>() {
+
+            @Override
+            public void inform(final QueutureBox<Integer> box) {
+                running.countDown();
+                try {
+                    for (int i = 0; box.put(i); i++) {
+                        if (i == 0)
+                            Thread.sleep(10000);
+                    }
+                } catch (InterruptedException ie) {
+                    Throwables.propagate(ie);
+                }
+            }
+
+        }, Queues.<Integer> newLinkedBlockingQueue());
+
+        Thread canceller = new Thread(new Runnable() {
+
+            @Override
+            public void run() {
+                try {
+                    running.await();
+                    queuture.cancel(true);
+                } catch (InterruptedException ie) {
+                    Throwables.propagate(ie);
+                }
+            }
+
+        });
+        canceller.start();
+
+        try {
+            queuture.next();
+            Assert.fail();
+        } catch (CancellationException e) {
+            Assert.assertFalse(Thread.currentThread().isInterrupted());
+        } catch (ExecutionException e) {
+            Assert.fail(e.toString());
+        }
+        canceller.join();
+    }
+
+    @Test
+    public void inlineRunIsBoundedByDefault() throws InterruptedException {
+        CallerRunsQueutureTask<Integer> queuture = new CallerRunsQueutureTask<>(new Informable<QueutureBox<Integer>>() {
+
+            @Override
+            public void inform(final QueutureBox<Integer> box) {
+                try {
+                    for (int i = 0; box.put(i); i++) {}
+                } catch (InterruptedException ie) {
+                    Throwables.propagate(ie);
+                }
+            }
+
+        }, Queues.<Integer> newLinkedBlockingQueue(1));
+
+        try {
+            queuture.next();
+            Assert.fail();
+        } catch (ExecutionException e) {
+            Assert.assertTrue(e.getCause() instanceof IllegalStateException);
+        }
+    }
+
+    protected static CallerRunsQueutureTask<String> newCallerRunsQueutureTask(final AtomicReference<Thread> producer, final BlockingQueue<String> queue) {
+        return new CallerRunsQueutureTask<>(CallerRunsQueutureTaskTest.newInformable(producer), queue);
+    }
+
+    protected static Informable<QueutureBox<String>> newInformable(final AtomicReference<Thread> producer) {
+        return new Informable<QueutureBox<String>>() {
+
+            @Override
+            public void inform(final QueutureBox<String> box) {
+                producer.set(Thread.currentThread());
+                try {
+                    box.put("Hello!");
+                    box.put("Goodbye!");
+                    box.put("Aloha!");
+                } catch (InterruptedException ie) {
+                    Throwables.propagate(ie);
+                }
+            }
+
+        };
+    }
+
+}
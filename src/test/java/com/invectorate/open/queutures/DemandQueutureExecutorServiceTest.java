@@ -0,0 +1,128 @@
+package com.invectorate.open.queutures;
+
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import com.google.common.base.Throwables;
+import com.google.common.collect.ImmutableList;
+
+@RunWith(JUnit4.class)
+public class DemandQueutureExecutorServiceTest {
+
+    private static Informable<QueutureBox<String>> newRecordingInformable(final String name, final List<String> started) {
+        return new Informable<QueutureBox<String>>() {
+
+            @Override
+            public void inform(final QueutureBox<String> box) {
+                started.add(name);
+                try {
+                    box.put(name);
+                } catch (InterruptedException ie) {
+                    Throwables.propagate(ie);
+                }
+            }
+
+        };
+    }
+
+    @Test
+    public void computationWithWaitingConsumerRunsFirst() throws InterruptedException, ExecutionException, TimeoutException {
+        ExecutorService delegate = Executors.newSingleThreadExecutor();
+        ExecutorService consumers = Executors.newSingleThreadExecutor();
+        try {
+            DemandQueutureExecutorService executorService = new DemandQueutureExecutorService(delegate);
+
+            /* Occupy the only thread so that everything else queues up behind it. */
+            final CountDownLatch blocker = new CountDownLatch(1);
+            delegate.execute(new Runnable() {
+
+                @Override
+                public void run() {
+                    try {
+                        blocker.await();
+                    } catch (InterruptedException ie) {
+                        Throwables.propagate(ie);
+                    }
+                }
+
+            });
+
+            List<String> started = new CopyOnWriteArrayList<String>();
+            Queuture<String> a = executorService.submit(newRecordingInformable("a", started));
+            Queuture<String> b = executorService.submit(newRecordingInformable("b", started));
+            final Queuture<String> c = executorService.submit(newRecordingInformable("c", started));
+
+            final AtomicReference<Thread> consumer = new AtomicReference<Thread>();
+            Future<String> waiting = consumers.submit(new Callable<String>() {
+
+                @Override
+                public String call() throws InterruptedException, ExecutionException {
+                    consumer.set(Thread.currentThread());
+                    return c.next();
+                }
+
+            });
+            while (consumer.get() == null || consumer.get().getState() != Thread.State.WAITING)
+                Thread.sleep(1);
+            CompletableFuture<String> requested = ((QueutureTask<String>) b).nextAsync();
+
+            blocker.countDown();
+
+            Assert.assertEquals("c", waiting.get(1, TimeUnit.SECONDS));
+            Assert.assertEquals("b", requested.get(1, TimeUnit.SECONDS));
+            Assert.assertEquals("a", a.next(1, TimeUnit.SECONDS));
+            Assert.assertEquals(ImmutableList.of("c", "b", "a"), started);
+        } finally {
+            consumers.shutdownNow();
+            delegate.shutdownNow();
+            delegate.awaitTermination(1, TimeUnit.SECONDS);
+        }
+    }
+
+    @Test
+    public void claimedComputationsAreForgotten() throws InterruptedException, ExecutionException, TimeoutException {
+        ExecutorService delegate = Executors.newFixedThreadPool(2);
+        ExecutorService consumers = Executors.newFixedThreadPool(32);
+        try {
+            DemandQueutureExecutorService executorService = new DemandQueutureExecutorService(delegate);
+            List<Future<String>> results = new CopyOnWriteArrayList<Future<String>>();
+            for (int i = 0; i < 2000; i++) {
+                final Queuture<String> queuture = executorService.submit(newRecordingInformable("task " + i, new CopyOnWriteArrayList<String>()));
+                results.add(consumers.submit(new Callable<String>() {
+
+                    @Override
+                    public String call() throws InterruptedException, ExecutionException {
+                        String result = queuture.next();
+                        Assert.assertNull(queuture.next());
+                        return result;
+                    }
+
+                }));
+            }
+            for (int i = 0; i < results.size(); i++)
+                Assert.assertEquals("task " + i, results.get(i).get(10, TimeUnit.SECONDS));
+
+            Assert.assertEquals(0, executorService.getPendingCount());
+            Assert.assertEquals(0, executorService.getDemandedCount());
+        } finally {
+            consumers.shutdownNow();
+            delegate.shutdownNow();
+        }
+    }
+
+}
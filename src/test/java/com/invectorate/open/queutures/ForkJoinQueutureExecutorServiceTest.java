@@ -0,0 +1,82 @@
+package com.invectorate.open.queutures;
+
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import com.google.common.base.Throwables;
+
+@RunWith(JUnit4.class)
+public class ForkJoinQueutureExecutorServiceTest {
+
+    @Test
+    public void submittedInformableIsExecutedAsQueuture() throws InterruptedException, ExecutionException {
+        ForkJoinQueutureExecutorService executorService = new ForkJoinQueutureExecutorService(new ForkJoinPool(2));
+        Queuture<String> queuture = executorService.submit(new Informable<QueutureBox<String>>() {
+
+            @Override
+            public void inform(final QueutureBox<String> box) {
+                try {
+                    box.put("Hello!");
+                    box.put("Goodbye!");
+                } catch (InterruptedException ie) {
+                    Throwables.propagate(ie);
+                }
+            }
+
+        });
+
+        Assert.assertEquals("Hello!", queuture.next());
+        Assert.assertEquals("Goodbye!", queuture.next());
+        Assert.assertNull(queuture.next());
+
+        Assert.assertTrue(queuture.isDone());
+        executorService.shutdown();
+    }
+
+    @Test
+    public void childQueuturesCanBeConsumedOnSingleWorker() throws InterruptedException, ExecutionException {
+        final ForkJoinQueutureExecutorService executorService = new ForkJoinQueutureExecutorService(new ForkJoinPool(1));
+        Queuture<Integer> queuture = executorService.submit(new Informable<QueutureBox<Integer>>() {
+
+            @Override
+            public void inform(final QueutureBox<Integer> box) {
+                try {
+                    for (int i = 0; i < 10; i++) {
+                        final int base = i * 10;
+                        Queuture<Integer> child = executorService.submit(new Informable<QueutureBox<Integer>>() {
+
+                            @Override
+                            public void inform(final QueutureBox<Integer> childBox) {
+                                try {
+                                    for (int j = 0; j < 10; j++)
+                                        childBox.put(base + j);
+                                } catch (InterruptedException ie) {
+                                    Throwables.propagate(ie);
+                                }
+                            }
+
+                        });
+
+                        Integer v;
+                        while ((v = child.next()) != null)
+                            box.put(v);
+                    }
+                } catch (InterruptedException | ExecutionException e) {
+                    Throwables.propagate(e);
+                }
+            }
+
+        });
+
+        for (int i = 0; i < 100; i++)
+            Assert.assertEquals(Integer.valueOf(i), queuture.next());
+        Assert.assertNull(queuture.next());
+        executorService.shutdown();
+    }
+
+}
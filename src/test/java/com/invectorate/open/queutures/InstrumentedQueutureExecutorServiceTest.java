@@ -0,0 +1,89 @@
+package com.invectorate.open.queutures;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import com.google.common.base.Throwables;
+import com.google.common.collect.Queues;
+
+@RunWith(JUnit4.class)
+public class InstrumentedQueutureExecutorServiceTest {
+
+    @Test
+    public void waitingTimeIsRecordedPerTaskAndPerExecutor() throws InterruptedException, ExecutionException {
+        ExecutorService delegate = Executors.newCachedThreadPool();
+        try {
+            InstrumentedQueutureExecutorService executorService = new InstrumentedQueutureExecutorService(delegate);
+            final CountDownLatch produced = new CountDownLatch(2);
+            Informable<QueutureBox<String>> informable = new Informable<QueutureBox<String>>() {
+
+                @Override
+                public void inform(final QueutureBox<String> box) {
+                    try {
+                        box.put("Hello!");
+                        produced.countDown();
+                    } catch (InterruptedException ie) {
+                        Throwables.propagate(ie);
+                    }
+                }
+
+            };
+
+            Queuture<String> a = executorService.submit(informable);
+            Queuture<String> b = executorService.submit(informable);
+            produced.await();
+            Thread.sleep(50);
+
+            Assert.assertEquals("Hello!", a.next());
+            Assert.assertNull(a.next());
+            Assert.assertEquals("Hello!", b.next());
+
+            LatencyHistogram.Snapshot snapshot = ((InstrumentedQueutureTask<String>) a).getLatencyHistogram().snapshot();
+            Assert.assertEquals(1, snapshot.getCount());
+            Assert.assertTrue(snapshot.getMax() >= TimeUnit.MILLISECONDS.toNanos(50));
+
+            Assert.assertEquals(2, executorService.getLatencyHistogram().snapshot().getCount());
+            Assert.assertTrue(executorService.getLatencyHistogram().snapshot().getValueAtPercentile(50.0) >= TimeUnit.MILLISECONDS.toNanos(50));
+        } finally {
+            delegate.shutdownNow();
+        }
+    }
+
+    @Test
+    public void waitingTimeIsRecordedForLargeBacklogs() throws InterruptedException, ExecutionException {
+        final int count = 10000;
+        InstrumentedQueutureTask<Integer> queuture = new InstrumentedQueutureTask<>(new Informable<QueutureBox<Integer>>() {
+
+            @Override
+            public void inform(final QueutureBox<Integer> box) {
+                try {
+                    for (int i = 0; i < count; i++)
+                        box.put(i);
+                } catch (InterruptedException ie) {
+                    Throwables.propagate(ie);
+                }
+            }
+
+        }, Queues.<Integer> newLinkedBlockingQueue());
+        queuture.run();
+        Thread.sleep(50);
+
+        for (int i = 0; i < count; i++)
+            Assert.assertEquals(Integer.valueOf(i), queuture.next());
+        Assert.assertNull(queuture.next());
+
+        /* Every result waited at least as long as the sleep, including those beyond the first chunk of timestamps. */
+        LatencyHistogram.Snapshot snapshot = queuture.getLatencyHistogram().snapshot();
+        Assert.assertEquals(count, snapshot.getCount());
+        Assert.assertTrue(snapshot.getValueAtPercentile(0.0) >= TimeUnit.MILLISECONDS.toNanos(50));
+    }
+
+}
@@ -0,0 +1,54 @@
+package com.invectorate.open.queutures;
+
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+@RunWith(JUnit4.class)
+public class LatencyHistogramTest {
+
+    @Test
+    public void bucketsCoverEveryValueWithBoundedError() {
+        long[] values = { 0, 1, 31, 32, 63, 64, 65, 1000, 123456789, Long.MAX_VALUE };
+        for (long value : values) {
+            int index = LatencyHistogram.indexOf(value);
+            Assert.assertTrue(LatencyHistogram.lowestValueAt(index) <= value);
+            Assert.assertTrue(LatencyHistogram.highestValueAt(index) >= value);
+            Assert.assertTrue(LatencyHistogram.highestValueAt(index) - value <= value / 32);
+        }
+        for (int index = 1; index <= LatencyHistogram.indexOf(Long.MAX_VALUE); index++)
+            Assert.assertEquals(LatencyHistogram.highestValueAt(index - 1) + 1, LatencyHistogram.lowestValueAt(index));
+    }
+
+    @Test
+    public void percentilesReflectRecordedValues() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (int i = 1; i <= 1000; i++)
+            histogram.record(i, TimeUnit.MICROSECONDS);
+
+        LatencyHistogram.Snapshot snapshot = histogram.snapshot();
+        Assert.assertEquals(1000, snapshot.getCount());
+        Assert.assertEquals(500000.0, snapshot.getValueAtPercentile(50.0), 500000.0 / 32);
+        Assert.assertEquals(990000.0, snapshot.getValueAtPercentile(99.0), 990000.0 / 32);
+        Assert.assertEquals(1000000.0, snapshot.getMax(), 1000000.0 / 32);
+        Assert.assertEquals(500500.0, snapshot.getMean(), 500500.0 / 32);
+    }
+
+    @Test
+    public void intervalSnapshotsResetWithoutLosingTotals() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        histogram.recordNanos(10);
+        histogram.recordNanos(20);
+
+        Assert.assertEquals(2, histogram.intervalSnapshot().getCount());
+        Assert.assertEquals(0, histogram.intervalSnapshot().getCount());
+
+        histogram.recordNanos(30);
+        Assert.assertEquals(1, histogram.intervalSnapshot().getCount());
+        Assert.assertEquals(3, histogram.snapshot().getCount());
+    }
+
+}
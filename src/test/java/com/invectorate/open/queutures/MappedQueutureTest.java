@@ -0,0 +1,237 @@
+package com.invectorate.open.queutures;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import com.google.common.base.Throwables;
+
+@RunWith(JUnit4.class)
+public class MappedQueutureTest {
+
+    @Rule
+    public final TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void resultsAreDeliveredExactlyOnceAcrossConsumers() throws Exception {
+        final int count = 10000;
+        Path file = this.folder.newFile().toPath();
+        ExecutorService pool = Executors.newFixedThreadPool(3);
+        try (final MappedQueutureBox<Integer> box = MappedQueutureBox.create(file, 16, 4, new IntegerSerializer())) {
+            pool.execute(new Runnable() {
+
+                @Override
+                public void run() {
+                    box.run(new Informable<QueutureBox<Integer>>() {
+
+                        @Override
+                        public void inform(final QueutureBox<Integer> box) {
+                            try {
+                                for (int i = 0; i < count; i++)
+                                    box.put(i);
+                            } catch (InterruptedException ie) {
+                                Throwables.propagate(ie);
+                            }
+                        }
+
+                    });
+                }
+
+            });
+
+            List<Future<BitSet>> consumers = new ArrayList<Future<BitSet>>();
+            for (int c = 0; c < 2; c++) {
+                final MappedQueuture<Integer> queuture = MappedQueuture.open(file, new IntegerSerializer());
+                consumers.add(pool.submit(new Callable<BitSet>() {
+
+                    @Override
+                    public BitSet call() throws Exception {
+                        try {
+                            BitSet seen = new BitSet();
+                            Integer v;
+                            while ((v = queuture.next(10, TimeUnit.SECONDS)) != null)
+                                seen.set(v);
+                            return seen;
+                        } finally {
+                            queuture.close();
+                        }
+                    }
+
+                }));
+            }
+
+            BitSet a = consumers.get(0).get(20, TimeUnit.SECONDS);
+            BitSet b = consumers.get(1).get(20, TimeUnit.SECONDS);
+            Assert.assertFalse(a.intersects(b));
+            a.or(b);
+            Assert.assertEquals(count, a.cardinality());
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    @Test
+    public void failuresAreReportedToConsumers() throws IOException, InterruptedException {
+        Path file = this.folder.newFile().toPath();
+        try (MappedQueutureBox<Integer> box = MappedQueutureBox.create(file, 4, 4, new IntegerSerializer());
+                MappedQueuture<Integer> queuture = MappedQueuture.open(file, new IntegerSerializer())) {
+            try {
+                box.run(new Informable<QueutureBox<Integer>>() {
+
+                    @Override
+                    public void inform(final QueutureBox<Integer> box) {
+                        try {
+                            box.put(1);
+                        } catch (InterruptedException ie) {
+                            Throwables.propagate(ie);
+                        }
+                        throw new IllegalStateException("oops");
+                    }
+
+                });
+                Assert.fail();
+            } catch (IllegalStateException e) {}
+
+            Assert.assertTrue(queuture.isDone());
+            Assert.assertFalse(queuture.isCancelled());
+            try {
+                queuture.next();
+                Assert.fail();
+            } catch (ExecutionException e) {
+                Assert.assertTrue(e.getMessage().contains("oops"));
+            }
+        }
+    }
+
+    @Test
+    public void cancellationIsSeenByTheProducer() throws IOException, InterruptedException, ExecutionException {
+        Path file = this.folder.newFile().toPath();
+        try (MappedQueutureBox<Integer> box = MappedQueutureBox.create(file, 4, 4, new IntegerSerializer());
+                MappedQueuture<Integer> queuture = MappedQueuture.open(file, new IntegerSerializer())) {
+            Assert.assertTrue(box.put(1));
+            Assert.assertTrue(queuture.cancel(true));
+            Assert.assertTrue(box.isCancelled());
+            Assert.assertFalse(box.put(2));
+            Assert.assertFalse(queuture.cancel(true));
+
+            /* The result put before cancellation is not delivered. */
+            try {
+                queuture.next();
+                Assert.fail();
+            } catch (CancellationException e) {}
+        }
+    }
+
+    @Test
+    public void resultsAreDeliveredToAnotherProcess() throws Exception {
+        Path file = this.folder.getRoot().toPath().resolve("ring");
+        String java = Paths.get(System.getProperty("java.home"), "bin", "java").toString();
+        Process process = new ProcessBuilder(java, "-cp", System.getProperty("java.class.path"), Producer.class.getName(), file.toString(), "1000")
+                .redirectErrorStream(true).redirectOutput(new File(this.folder.getRoot(), "producer.log")).start();
+        try {
+            MappedQueuture<String> queuture = null;
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(20);
+            while (queuture == null) {
+                try {
+                    queuture = MappedQueuture.open(file, new StringSerializer());
+                } catch (IOException e) {
+                    if (System.nanoTime() > deadline)
+                        throw e;
+                    Thread.sleep(10);
+                }
+            }
+
+            try {
+                int expected = 0;
+                String v;
+                while ((v = queuture.next(20, TimeUnit.SECONDS)) != null)
+                    Assert.assertEquals("result " + expected++, v);
+                Assert.assertEquals(1000, expected);
+            } finally {
+                queuture.close();
+            }
+
+            Assert.assertTrue(process.waitFor(20, TimeUnit.SECONDS));
+            Assert.assertEquals(0, process.exitValue());
+        } finally {
+            process.destroyForcibly();
+        }
+    }
+
+    /**
+     * Run in a separate JVM by {@link MappedQueutureTest#resultsAreDeliveredToAnotherProcess()}.
+     */
+    public static final class Producer {
+
+        public static void main(final String[] args) throws IOException {
+            final int count = Integer.parseInt(args[1]);
+            try (MappedQueutureBox<String> box = MappedQueutureBox.create(Paths.get(args[0]), 8, 64, new StringSerializer())) {
+                box.run(new Informable<QueutureBox<String>>() {
+
+                    @Override
+                    public void inform(final QueutureBox<String> box) {
+                        try {
+                            for (int i = 0; i < count; i++)
+                                box.put("result " + i);
+                        } catch (InterruptedException ie) {
+                            Throwables.propagate(ie);
+                        }
+                    }
+
+                });
+            }
+        }
+
+    }
+
+    private static final class IntegerSerializer implements Serializer<Integer> {
+
+        @Override
+        public void serialize(final Integer object, final ByteBuffer target) {
+            target.putInt(object);
+        }
+
+        @Override
+        public Integer deserialize(final ByteBuffer source) {
+            return source.getInt();
+        }
+
+    }
+
+    private static final class StringSerializer implements Serializer<String> {
+
+        @Override
+        public void serialize(final String object, final ByteBuffer target) {
+            target.put(object.getBytes(StandardCharsets.UTF_8));
+        }
+
+        @Override
+        public String deserialize(final ByteBuffer source) {
+            byte[] bytes = new byte[source.remaining()];
+            source.get(bytes);
+            return new String(bytes, StandardCharsets.UTF_8);
+        }
+
+    }
+
+}
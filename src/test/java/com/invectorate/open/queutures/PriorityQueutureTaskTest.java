@@ -0,0 +1,94 @@
+package com.invectorate.open.queutures;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import com.google.common.base.Throwables;
+import com.google.common.collect.Ordering;
+
+@RunWith(JUnit4.class)
+public class PriorityQueutureTaskTest {
+
+    @Test
+    public void resultsAreDeliveredInPriorityOrder() throws InterruptedException, ExecutionException {
+        PriorityQueutureTask<String> queuture = new PriorityQueutureTask<>(new Informable<QueutureBox<String>>() {
+
+            @Override
+            public void inform(final QueutureBox<String> box) {
+                try {
+                    box.put("Goodbye!");
+                    box.put("Hello!");
+                    box.put("Aloha!");
+                } catch (InterruptedException ie) {
+                    Throwables.propagate(ie);
+                }
+            }
+
+        }, Ordering.<String> natural());
+
+        queuture.run();
+
+        Assert.assertEquals("Aloha!", queuture.next());
+        Assert.assertEquals("Goodbye!", queuture.next());
+        Assert.assertEquals("Hello!", queuture.next());
+        Assert.assertNull(queuture.next());
+    }
+
+    @Test
+    public void manyConsumersReceiveEveryResult() throws Throwable {
+        final int consumers = 8;
+        final int results = 40000;
+
+        final PriorityQueutureTask<Integer> queuture = new PriorityQueutureTask<>(new Informable<QueutureBox<Integer>>() {
+
+            @Override
+            public void inform(final QueutureBox<Integer> box) {
+                try {
+                    for (int i = 0; i < results; i++)
+                        box.put(i);
+                } catch (InterruptedException ie) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+
+        }, Ordering.<Integer> natural(), 64);
+
+        final List<Integer> received = Collections.synchronizedList(new ArrayList<Integer>());
+        List<Thread> threads = new ArrayList<>();
+        for (int i = 0; i < consumers; i++) {
+            threads.add(new Thread() {
+
+                @Override
+                public void run() {
+                    try {
+                        Integer v;
+                        while ((v = queuture.next()) != null)
+                            received.add(v);
+                    } catch (Exception e) {
+                        throw new AssertionError(e);
+                    }
+                }
+
+            });
+        }
+        for (Thread thread : threads)
+            thread.start();
+
+        queuture.run();
+        for (Thread thread : threads)
+            thread.join();
+
+        Assert.assertEquals(results, received.size());
+        Collections.sort(received);
+        for (int i = 0; i < received.size(); i++)
+            Assert.assertEquals(Integer.valueOf(i), received.get(i));
+    }
+
+}
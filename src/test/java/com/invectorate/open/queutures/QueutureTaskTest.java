@@ -1,11 +1,24 @@
 package com.invectorate.open.queutures;
 
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
 import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicReference;
+
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
 
 import org.hamcrest.CoreMatchers;
 import org.junit.Assert;
@@ -16,7 +29,9 @@ import org.junit.runner.RunWith;
 import org.junit.runners.JUnit4;
 
 import com.google.common.base.Throwables;
+import com.google.common.collect.Lists;
 import com.google.common.collect.Queues;
+import com.google.common.collect.Sets;
 
 import edu.umd.cs.mtc.MultithreadedTestCase;
 import edu.umd.cs.mtc.TestFramework;
@@ -355,6 +370,185 @@ public class QueutureTaskTest {
         TestFramework.runOnce(new RunningButCancelledThreadDoesNotPassResultsInteraction());
     }
 
+    @Test
+    public void cooperativeProducerStopsWhenCancelled() throws InterruptedException, ExecutionException {
+        final AtomicReference<QueutureBox<Integer>> box = new AtomicReference<>();
+        QueutureTask<Integer> queuture = QueutureTaskTest.newQueutureTask(new Informable<QueutureBox<Integer>>() {
+
+            @Override
+            public void inform(final QueutureBox<Integer> b) {
+                box.set(b);
+                try {
+                    for (int i = 0; b.put(i); i++) {}
+                } catch (InterruptedException ie) {
+                    Throwables.propagate(ie);
+                }
+            }
+
+        }, Queues.<Integer> newLinkedBlockingQueue(1));
+
+        Thread producer = new Thread(queuture);
+        producer.start();
+
+        Assert.assertEquals(Integer.valueOf(0), queuture.next());
+        queuture.cancel(false);
+
+        producer.join(1000);
+        Assert.assertFalse(producer.isAlive());
+        Assert.assertTrue(box.get().isCancelled());
+        Assert.assertFalse(box.get().put(42));
+    }
+
+    @Test
+    public void asynchronousResultsAreCompletedByProducer() throws InterruptedException, ExecutionException {
+        QueutureTask<String> queuture = QueutureTaskTest.newQueutureTaskWithBasicInformable();
+
+        CompletableFuture<String> first = queuture.nextAsync();
+        CompletableFuture<String> cancelled = queuture.nextAsync();
+        CompletableFuture<String> second = queuture.nextAsync();
+        CompletableFuture<String> third = queuture.nextAsync();
+        Assert.assertFalse(first.isDone());
+
+        /* Withdrawing a request must not consume a result. */
+        Assert.assertTrue(cancelled.cancel(false));
+
+        queuture.run();
+
+        Assert.assertEquals("Hello!", first.getNow(null));
+        Assert.assertEquals("Goodbye!", second.getNow(null));
+        Assert.assertTrue(third.isDone());
+        Assert.assertNull(third.get());
+    }
+
+    @Test
+    public void asynchronousBatchesContainAvailableResults() throws InterruptedException, ExecutionException {
+        QueutureTask<String> queuture = QueutureTaskTest.newQueutureTaskWithBasicInformable();
+
+        queuture.run();
+
+        Assert.assertEquals(Lists.newArrayList("Hello!", "Goodbye!"), queuture.nextAsync(5).get());
+        Assert.assertTrue(queuture.nextAsync(5).get().isEmpty());
+    }
+
+    @Test
+    public void asynchronousResultsFailWhenCancelled() throws InterruptedException, ExecutionException {
+        QueutureTask<String> queuture = QueutureTaskTest.newQueutureTaskWithBasicInformable();
+
+        CompletableFuture<String> next = queuture.nextAsync();
+        queuture.cancel(false);
+
+        Assert.assertTrue(next.isCompletedExceptionally());
+        this.exceptionRule.expect(CancellationException.class);
+        next.join();
+    }
+
+    @Test
+    public void asynchronousResultsFailWhenComputationFails() throws InterruptedException, ExecutionException {
+        QueutureTask<String> queuture = QueutureTaskTest.newQueutureTaskWithThrowingInformable();
+
+        CompletableFuture<String> next = queuture.nextAsync();
+        queuture.run();
+
+        this.exceptionRule.expect(ExecutionException.class);
+        this.exceptionRule.expectCause(CoreMatchers.isA(IllegalStateException.class));
+        next.get();
+    }
+
+    @Test
+    public void dropNewestPolicyDiscardsResultsThatDoNotFit() throws InterruptedException, ExecutionException {
+        QueutureTask<Integer> queuture = QueutureTaskTest.newQueutureTaskWithOverflowPolicy(OverflowPolicy.dropNewest());
+
+        queuture.run();
+
+        Assert.assertEquals(3, queuture.getDroppedCount());
+        Assert.assertEquals(Integer.valueOf(1), queuture.next());
+        Assert.assertEquals(Integer.valueOf(2), queuture.next());
+        Assert.assertNull(queuture.next());
+    }
+
+    @Test
+    public void dropOldestPolicyKeepsLatestResults() throws InterruptedException, ExecutionException {
+        QueutureTask<Integer> queuture = QueutureTaskTest.newQueutureTaskWithOverflowPolicy(OverflowPolicy.dropOldest());
+
+        queuture.run();
+
+        Assert.assertEquals(3, queuture.getDroppedCount());
+        Assert.assertEquals(Integer.valueOf(4), queuture.next());
+        Assert.assertEquals(Integer.valueOf(5), queuture.next());
+        Assert.assertNull(queuture.next());
+    }
+
+    @Test
+    public void samplePolicyKeepsEveryNthOverflowingResult() throws InterruptedException, ExecutionException {
+        QueutureTask<Integer> queuture = QueutureTaskTest.newQueutureTaskWithOverflowPolicy(OverflowPolicy.sample(2));
+
+        queuture.run();
+
+        Assert.assertEquals(3, queuture.getDroppedCount());
+        Assert.assertEquals(Integer.valueOf(2), queuture.next());
+        Assert.assertEquals(Integer.valueOf(4), queuture.next());
+        Assert.assertNull(queuture.next());
+    }
+
+    @Test
+    public void flightRecorderEventsAreEmitted() throws InterruptedException, ExecutionException, IOException {
+        List<String> names = Lists.newArrayList("TaskExecution", "TaskCancellation", "BoxPut", "Next");
+        Set<String> recorded = Sets.newHashSet();
+
+        Path dump = Files.createTempFile("queutures", ".jfr");
+        try (Recording recording = new Recording()) {
+            for (String name : names)
+                recording.enable("com.invectorate.open.queutures." + name).withThreshold(Duration.ZERO);
+            recording.start();
+
+            /* The consumer waits for the first result, and the producer waits for space for the second. */
+            final QueutureTask<String> queuture = QueutureTaskTest.newQueutureTaskWithTinyQueue(new Informable<QueutureBox<String>>() {
+
+                @Override
+                public void inform(final QueutureBox<String> box) {
+                    try {
+                        box.put("Hello!");
+                        box.put("Goodbye!");
+                    } catch (InterruptedException ie) {
+                        Throwables.propagate(ie);
+                    }
+                }
+
+            }, null);
+            Thread producer = new Thread() {
+
+                @Override
+                public void run() {
+                    try {
+                        Thread.sleep(20);
+                    } catch (InterruptedException ie) {
+                        return;
+                    }
+                    queuture.run();
+                }
+
+            };
+            producer.start();
+            Assert.assertEquals("Hello!", queuture.next());
+            Assert.assertEquals("Goodbye!", queuture.next());
+            Assert.assertNull(queuture.next());
+            producer.join();
+
+            QueutureTaskTest.newQueutureTaskWithBasicInformable().cancel(false);
+
+            recording.stop();
+            recording.dump(dump);
+
+            for (RecordedEvent event : RecordingFile.readAllEvents(dump))
+                recorded.add(event.getEventType().getName());
+        } finally {
+            Files.delete(dump);
+        }
+
+        for (String name : names)
+            Assert.assertTrue(name, recorded.contains("com.invectorate.open.queutures." + name));
+    }
+
     protected static QueutureTask<String> newQueutureTaskWithBasicInformable() {
         Informable<QueutureBox<String>> informable = new Informable<QueutureBox<String>>() {
 
@@ -423,6 +617,22 @@ public class QueutureTaskTest {
         return QueutureTaskTest.newQueutureTaskWithTinyQueue(informable, null);
     }
 
+    protected static QueutureTask<Integer> newQueutureTaskWithOverflowPolicy(final OverflowPolicy overflowPolicy) {
+        Informable<QueutureBox<Integer>> informable = new Informable<QueutureBox<Integer>>() {
+
+            @Override
+            public void inform(final QueutureBox<Integer> box) {
+                try {
+                    for (int i = 1; i <= 5; i++)
+                        Assert.assertTrue(box.put(i, 25, TimeUnit.MILLISECONDS));
+                } catch (TimeoutException | InterruptedException e) {
+                    Throwables.propagate(e);
+                }
+            }
+        };
+        return new QueutureTask<Integer>(informable, new ArrayBlockingQueue<Integer>(2), overflowPolicy);
+    }
+
     protected static <V> QueutureTask<V> newQueutureTask(final Informable<QueutureBox<V>> informable, final BlockingQueue<V> queue) {
         return new QueutureTask<V>(informable, queue != null ? queue : Queues.<V> newLinkedBlockingQueue());
     }
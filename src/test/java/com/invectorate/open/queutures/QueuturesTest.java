@@ -0,0 +1,388 @@
+package com.invectorate.open.queutures;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import com.google.common.base.Stopwatch;
+import com.google.common.base.Throwables;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Ordering;
+import com.google.common.collect.Queues;
+
+@RunWith(JUnit4.class)
+public class QueuturesTest {
+
+    @Test
+    public void limitCancelsSourceAfterLastResult() throws InterruptedException, ExecutionException {
+        final QueutureTask<Integer> source = new QueutureTask<>(new Informable<QueutureBox<Integer>>() {
+
+            @Override
+            public void inform(final QueutureBox<Integer> box) {
+                try {
+                    for (int i = 0; box.put(i); i++) {}
+                } catch (InterruptedException ie) {
+                    Throwables.propagate(ie);
+                }
+            }
+
+        }, Queues.<Integer> newLinkedBlockingQueue(2));
+
+        Thread producer = new Thread(source);
+        producer.start();
+
+        Queuture<Integer> queuture = Queutures.limit(source, 5);
+        for (int i = 0; i < 5; i++)
+            Assert.assertEquals(Integer.valueOf(i), queuture.next());
+        Assert.assertNull(queuture.next());
+
+        Assert.assertTrue(queuture.isDone());
+        Assert.assertFalse(queuture.isCancelled());
+        Assert.assertTrue(source.isCancelled());
+
+        producer.join(1000);
+        Assert.assertFalse(producer.isAlive());
+    }
+
+    @Test
+    public void limitCannotBeCancelledAfterSourceCompletes() throws InterruptedException, ExecutionException {
+        QueutureTask<Integer> source = QueuturesTest.newCountingQueutureTask(3);
+        source.run();
+
+        Queuture<Integer> queuture = Queutures.limit(source, 5);
+        Assert.assertFalse(queuture.cancel(true));
+        Assert.assertFalse(queuture.isCancelled());
+        Assert.assertTrue(queuture.isDone());
+        Assert.assertEquals(Integer.valueOf(0), queuture.next());
+    }
+
+    @Test
+    public void limitDoesNotLosePermitsToTimedOutReads() throws Exception {
+        final CountDownLatch release = new CountDownLatch(1);
+        final QueutureTask<Integer> source = new QueutureTask<>(new Informable<QueutureBox<Integer>>() {
+
+            @Override
+            public void inform(final QueutureBox<Integer> box) {
+                try {
+                    release.await();
+                    for (int i = 0; box.put(i); i++) {}
+                } catch (InterruptedException ie) {
+                    Throwables.propagate(ie);
+                }
+            }
+
+        }, Queues.<Integer> newLinkedBlockingQueue(2));
+
+        ExecutorService executor = Executors.newCachedThreadPool();
+        try {
+            executor.execute(source);
+
+            final Queuture<Integer> queuture = Queutures.limit(source, 1);
+            Future<Integer> timed = executor.submit(new Callable<Integer>() {
+
+                @Override
+                public Integer call() throws Exception {
+                    return queuture.next(200, TimeUnit.MILLISECONDS);
+                }
+
+            });
+            Thread.sleep(50);
+            Future<Integer> untimed = executor.submit(new Callable<Integer>() {
+
+                @Override
+                public Integer call() throws Exception {
+                    return queuture.next();
+                }
+
+            });
+
+            try {
+                timed.get(10, TimeUnit.SECONDS);
+                Assert.fail();
+            } catch (ExecutionException e) {
+                Assert.assertTrue(e.getCause() instanceof TimeoutException);
+            }
+            Assert.assertFalse(untimed.isDone());
+
+            release.countDown();
+            Assert.assertEquals(Integer.valueOf(0), untimed.get(10, TimeUnit.SECONDS));
+            Assert.assertNull(queuture.next());
+            Assert.assertTrue(queuture.isDone());
+            Assert.assertTrue(source.isCancelled());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void rateLimitedQueutureDeliversNoFasterThanRate() throws InterruptedException, ExecutionException {
+        QueutureTask<Integer> source = QueuturesTest.newCountingQueutureTask(6);
+        source.run();
+
+        Queuture<Integer> queuture = Queutures.rateLimited(source, 50.0, 1);
+
+        Stopwatch stopwatch = new Stopwatch().start();
+        for (int i = 0; i < 6; i++)
+            Assert.assertEquals(Integer.valueOf(i), queuture.next());
+
+        /* The first result is free; the remaining five are spaced 20 milliseconds apart. */
+        Assert.assertTrue(stopwatch.elapsedMillis() >= 90);
+    }
+
+    @Test
+    public void rateLimitedQueutureAllowsBursts() throws InterruptedException, ExecutionException {
+        QueutureTask<Integer> source = QueuturesTest.newCountingQueutureTask(5);
+        source.run();
+
+        Queuture<Integer> queuture = Queutures.rateLimited(source, 1.0, 5);
+
+        Stopwatch stopwatch = new Stopwatch().start();
+        for (int i = 0; i < 5; i++)
+            Assert.assertEquals(Integer.valueOf(i), queuture.next());
+
+        Assert.assertTrue(stopwatch.elapsedMillis() < 500);
+    }
+
+    @Test
+    public void windowClosesWhenFull() throws InterruptedException, ExecutionException {
+        QueutureTask<Integer> source = QueuturesTest.newCountingQueutureTask(5);
+        source.run();
+
+        Queuture<List<Integer>> queuture = Queutures.window(source, 2, 1, TimeUnit.HOURS);
+
+        Assert.assertEquals(Lists.newArrayList(0, 1), queuture.next());
+        Assert.assertEquals(Lists.newArrayList(2, 3), queuture.next());
+        Assert.assertEquals(Lists.newArrayList(4), queuture.next());
+        Assert.assertNull(queuture.next());
+    }
+
+    @Test
+    public void windowClosesWhenTimeElapses() throws InterruptedException, ExecutionException {
+        final CountDownLatch latch = new CountDownLatch(1);
+        final QueutureTask<Integer> source = new QueutureTask<>(new Informable<QueutureBox<Integer>>() {
+
+            @Override
+            public void inform(final QueutureBox<Integer> box) {
+                try {
+                    box.put(1);
+                    box.put(2);
+                    latch.await();
+                    box.put(3);
+                } catch (InterruptedException ie) {
+                    Throwables.propagate(ie);
+                }
+            }
+
+        }, Queues.<Integer> newLinkedBlockingQueue());
+
+        Thread producer = new Thread(source);
+        producer.start();
+
+        Queuture<List<Integer>> queuture = Queutures.window(source, 10, 50, TimeUnit.MILLISECONDS);
+
+        Assert.assertEquals(Lists.newArrayList(1, 2), queuture.next());
+        latch.countDown();
+        Assert.assertEquals(Lists.newArrayList(3), queuture.next());
+        Assert.assertNull(queuture.next());
+
+        producer.join();
+    }
+
+    @Test
+    public void streamDeliversEveryResult() {
+        QueutureTask<Integer> source = QueuturesTest.newCountingQueutureTask(100);
+        source.run();
+
+        try (Stream<Integer> stream = Queutures.stream(source)) {
+            List<Integer> results = stream.collect(Collectors.toList());
+            Assert.assertEquals(100, results.size());
+            for (int i = 0; i < 100; i++)
+                Assert.assertEquals(Integer.valueOf(i), results.get(i));
+        }
+    }
+
+    @Test
+    public void parallelStreamDeliversEveryResult() throws InterruptedException {
+        QueutureTask<Integer> source = QueuturesTest.newCountingQueutureTask(10000);
+        Thread producer = new Thread(source);
+        producer.start();
+
+        try (Stream<Integer> stream = Queutures.stream(source)) {
+            Assert.assertEquals(49995000L, stream.parallel().mapToLong(Integer::longValue).sum());
+        }
+        producer.join();
+    }
+
+    @Test
+    public void closingStreamCancelsQueuture() {
+        QueutureTask<Integer> source = QueuturesTest.newCountingQueutureTask(100);
+
+        Stream<Integer> stream = Queutures.stream(source);
+        Assert.assertFalse(source.isCancelled());
+        stream.close();
+        Assert.assertTrue(source.isCancelled());
+    }
+
+    @Test
+    public void mergeSortedDeliversResultsInOrder() throws InterruptedException, ExecutionException {
+        QueutureTask<Integer> a = QueuturesTest.newQueutureTask(1, 4, 7, 10);
+        QueutureTask<Integer> b = QueuturesTest.newQueutureTask(2, 2, 8);
+        QueutureTask<Integer> c = QueuturesTest.newQueutureTask();
+        QueutureTask<Integer> d = QueuturesTest.newQueutureTask(0, 3, 5, 6, 9, 11);
+        for (QueutureTask<Integer> source : ImmutableList.of(a, b, c, d))
+            source.run();
+
+        Queuture<Integer> merged = Queutures.mergeSorted(Ordering.<Integer> natural(), a, b, c, d);
+
+        List<Integer> results = Lists.newArrayList();
+        Integer v;
+        while ((v = merged.next()) != null)
+            results.add(v);
+        Assert.assertEquals(Lists.newArrayList(0, 1, 2, 2, 3, 4, 5, 6, 7, 8, 9, 10, 11), results);
+        Assert.assertTrue(merged.isDone());
+    }
+
+    @Test
+    public void mergeSortedWaitsOnlyForSourceItNeeds() throws InterruptedException, ExecutionException, TimeoutException {
+        QueutureTask<Integer> a = QueuturesTest.newQueutureTask(1, 5);
+        QueutureTask<Integer> b = QueuturesTest.newQueutureTask(2, 3);
+        a.run();
+
+        Queuture<Integer> merged = Queutures.mergeSorted(Ordering.<Integer> natural(), a, b);
+
+        /* Nothing can be delivered until b has produced its first result. */
+        try {
+            merged.next(10, TimeUnit.MILLISECONDS);
+            Assert.fail("expected merge to wait for the second source");
+        } catch (TimeoutException e) {}
+
+        b.run();
+        Assert.assertEquals(Integer.valueOf(1), merged.next());
+        Assert.assertEquals(Integer.valueOf(2), merged.next());
+        Assert.assertEquals(Integer.valueOf(3), merged.next());
+        Assert.assertEquals(Integer.valueOf(5), merged.next());
+        Assert.assertNull(merged.next());
+    }
+
+    @Test
+    public void aggregationsFoldEveryResult() throws InterruptedException, ExecutionException {
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            QueutureTask<Integer> counted = QueuturesTest.newCountingQueutureTask(10000);
+            Aggregation<Long> count = Queutures.count(counted, executor, 4);
+            counted.run();
+            Assert.assertEquals(Long.valueOf(10000), count.result().get());
+
+            QueutureTask<Integer> summed = QueuturesTest.newCountingQueutureTask(10000);
+            Aggregation<Long> sum = Queutures.reduce(summed, executor, 4, 0L, (a, v) -> a + v, Long::sum);
+            summed.run();
+            Assert.assertEquals(Long.valueOf(49995000L), sum.result().get());
+
+            QueutureTask<Integer> grouped = QueuturesTest.newCountingQueutureTask(10000);
+            Aggregation<Map<Integer, Integer>> groups = Queutures.groupBy(grouped, executor, 4, v -> v % 3, 0, (a, v) -> a + 1, Integer::sum);
+            grouped.run();
+            Assert.assertEquals(ImmutableMap.of(0, 3334, 1, 3333, 2, 3333), groups.result().get());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void aggregationSnapshotReflectsResultsSoFar() throws InterruptedException, ExecutionException {
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            final CountDownLatch gate = new CountDownLatch(1);
+            QueutureTask<Integer> source = new QueutureTask<>(new Informable<QueutureBox<Integer>>() {
+
+                @Override
+                public void inform(final QueutureBox<Integer> box) {
+                    try {
+                        for (int i = 0; i < 10; i++)
+                            box.put(i);
+                        gate.await();
+                        box.put(10);
+                    } catch (InterruptedException ie) {
+                        Throwables.propagate(ie);
+                    }
+                }
+
+            }, Queues.<Integer> newLinkedBlockingQueue());
+            Thread producer = new Thread(source);
+            producer.start();
+
+            Aggregation<Long> count = Queutures.count(source, executor, 2);
+            while (count.snapshot() < 10)
+                Thread.sleep(1);
+            Assert.assertEquals(Long.valueOf(10), count.snapshot());
+            Assert.assertFalse(count.result().isDone());
+
+            gate.countDown();
+            Assert.assertEquals(Long.valueOf(11), count.result().get());
+            producer.join();
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void cancellingAggregationCancelsSource() {
+        QueutureTask<Integer> source = QueuturesTest.newCountingQueutureTask(10);
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            Aggregation<Long> count = Queutures.count(source, executor, 1);
+            Assert.assertTrue(count.result().cancel(true));
+            Assert.assertTrue(source.isCancelled());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    protected static QueutureTask<Integer> newCountingQueutureTask(final int count) {
+        return new QueutureTask<>(new Informable<QueutureBox<Integer>>() {
+
+            @Override
+            public void inform(final QueutureBox<Integer> box) {
+                try {
+                    for (int i = 0; i < count; i++)
+                        box.put(i);
+                } catch (InterruptedException ie) {
+                    Throwables.propagate(ie);
+                }
+            }
+
+        }, Queues.<Integer> newLinkedBlockingQueue());
+    }
+
+    protected static QueutureTask<Integer> newQueutureTask(final Integer... values) {
+        return new QueutureTask<>(new Informable<QueutureBox<Integer>>() {
+
+            @Override
+            public void inform(final QueutureBox<Integer> box) {
+                try {
+                    for (Integer value : values)
+                        box.put(value);
+                } catch (InterruptedException ie) {
+                    Throwables.propagate(ie);
+                }
+            }
+
+        }, Queues.<Integer> newLinkedBlockingQueue());
+    }
+
+}
@@ -0,0 +1,119 @@
+package com.invectorate.open.queutures;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Ordering;
+
+import edu.umd.cs.mtc.MultithreadedTestCase;
+import edu.umd.cs.mtc.TestFramework;
+
+@RunWith(JUnit4.class)
+public class SkipListPriorityBlockingQueueTest {
+
+    @Test
+    public void elementsArePolledInPriorityOrder() {
+        SkipListPriorityBlockingQueue<Integer> queue = new SkipListPriorityBlockingQueue<>(Ordering.<Integer> natural());
+
+        queue.addAll(Lists.newArrayList(5, 3, 9, 1, 7));
+
+        Assert.assertEquals(5, queue.size());
+        Assert.assertEquals(Integer.valueOf(1), queue.peek());
+        Assert.assertEquals(Integer.valueOf(1), queue.poll());
+        Assert.assertEquals(Integer.valueOf(3), queue.poll());
+        Assert.assertEquals(Integer.valueOf(5), queue.poll());
+        Assert.assertEquals(Integer.valueOf(7), queue.poll());
+        Assert.assertEquals(Integer.valueOf(9), queue.poll());
+        Assert.assertNull(queue.poll());
+    }
+
+    @Test
+    public void equalElementsArePolledInInsertionOrder() {
+        SkipListPriorityBlockingQueue<String> queue = new SkipListPriorityBlockingQueue<>(new Comparator<String>() {
+
+            @Override
+            public int compare(final String a, final String b) {
+                return Integer.compare(a.length(), b.length());
+            }
+
+        });
+
+        queue.addAll(Lists.newArrayList("bb", "a1", "c", "a2", "a3"));
+
+        List<String> drained = new ArrayList<>();
+        queue.drainTo(drained);
+        Assert.assertEquals(Lists.newArrayList("c", "bb", "a1", "a2", "a3"), drained);
+    }
+
+    @Test
+    public void boundedQueueRejectsOffersWhenFull() throws InterruptedException {
+        SkipListPriorityBlockingQueue<Integer> queue = new SkipListPriorityBlockingQueue<>(Ordering.<Integer> natural(), 2);
+
+        Assert.assertTrue(queue.offer(2));
+        Assert.assertTrue(queue.offer(1));
+        Assert.assertFalse(queue.offer(0));
+        Assert.assertFalse(queue.offer(0, 10, TimeUnit.MILLISECONDS));
+        Assert.assertEquals(0, queue.remainingCapacity());
+
+        Assert.assertEquals(Integer.valueOf(1), queue.poll());
+        Assert.assertEquals(1, queue.remainingCapacity());
+        Assert.assertTrue(queue.offer(0));
+    }
+
+    @Test
+    public void removeReleasesCapacity() {
+        SkipListPriorityBlockingQueue<Integer> queue = new SkipListPriorityBlockingQueue<>(Ordering.<Integer> natural(), 2);
+        queue.add(1);
+        queue.add(2);
+
+        Assert.assertFalse(queue.remove(3));
+        Assert.assertTrue(queue.remove(1));
+        Assert.assertFalse(queue.remove(1));
+        Assert.assertEquals(1, queue.size());
+        Assert.assertEquals(1, queue.remainingCapacity());
+        Assert.assertTrue(queue.offer(0));
+        Assert.assertEquals(Integer.valueOf(0), queue.poll());
+        Assert.assertEquals(Integer.valueOf(2), queue.poll());
+        Assert.assertNull(queue.poll());
+    }
+
+    /**
+     * Container for multithreaded interaction with {@link SkipListPriorityBlockingQueueTest#putBlocksUntilSpaceIsAvailable()}.
+     */
+    protected class PutBlocksUntilSpaceIsAvailableInteraction extends MultithreadedTestCase {
+
+        private SkipListPriorityBlockingQueue<Integer> queue = null;
+
+        @Override
+        public void initialize() {
+            this.queue = new SkipListPriorityBlockingQueue<>(Ordering.<Integer> natural(), 1);
+        }
+
+        public void thread1() throws InterruptedException {
+            this.queue.put(2);
+            this.queue.put(1);
+            this.assertTick(1);
+        }
+
+        public void thread2() throws InterruptedException {
+            this.waitForTick(1);
+            Assert.assertEquals(Integer.valueOf(2), this.queue.take());
+            Assert.assertEquals(Integer.valueOf(1), this.queue.take());
+        }
+
+    }
+
+    @Test
+    public void putBlocksUntilSpaceIsAvailable() throws Throwable {
+        TestFramework.runOnce(new PutBlocksUntilSpaceIsAvailableInteraction());
+    }
+
+}
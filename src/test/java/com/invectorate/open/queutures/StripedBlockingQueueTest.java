@@ -0,0 +1,95 @@
+package com.invectorate.open.queutures;
+
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import com.google.common.collect.Maps;
+
+@RunWith(JUnit4.class)
+public class StripedBlockingQueueTest {
+
+    @Test
+    public void elementsFromEachProducerAreRemovedInOrder() throws Exception {
+        final StripedBlockingQueue<int[]> queue = new StripedBlockingQueue<>(4);
+        final int producers = 8;
+        final int perProducer = 10000;
+
+        ExecutorService executor = Executors.newFixedThreadPool(producers);
+        try {
+            final CountDownLatch start = new CountDownLatch(1);
+            for (int p = 0; p < producers; p++) {
+                final int producer = p;
+                executor.execute(new Runnable() {
+
+                    @Override
+                    public void run() {
+                        try {
+                            start.await();
+                        } catch (InterruptedException ie) {
+                            return;
+                        }
+                        for (int i = 0; i < perProducer; i++)
+                            queue.put(new int[] { producer, i });
+                    }
+
+                });
+            }
+            start.countDown();
+
+            Map<Integer, Integer> last = Maps.newHashMap();
+            for (int n = 0; n < producers * perProducer; n++) {
+                int[] e = queue.poll(5, TimeUnit.SECONDS);
+                Assert.assertNotNull(e);
+                Integer previous = last.put(e[0], e[1]);
+                Assert.assertEquals(previous == null ? 0 : previous + 1, e[1]);
+            }
+            Assert.assertTrue(queue.isEmpty());
+            Assert.assertEquals(0, queue.size());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void takeWaitsForProducer() throws Exception {
+        final StripedBlockingQueue<String> queue = new StripedBlockingQueue<>();
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            Future<String> taken = executor.submit(() -> queue.take());
+            Thread.sleep(20);
+            Assert.assertFalse(taken.isDone());
+
+            queue.put("Hello!");
+            Assert.assertEquals("Hello!", taken.get(1, TimeUnit.SECONDS));
+            Assert.assertNull(queue.poll(10, TimeUnit.MILLISECONDS));
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void elementsCanBeRemovedByValue() {
+        StripedBlockingQueue<Integer> queue = new StripedBlockingQueue<>(4);
+        queue.put(1);
+        queue.put(2);
+        queue.put(3);
+
+        Assert.assertTrue(queue.remove(2));
+        Assert.assertFalse(queue.remove(2));
+        Assert.assertFalse(queue.remove(null));
+        Assert.assertEquals(2, queue.size());
+        Assert.assertEquals(Integer.valueOf(1), queue.poll());
+        Assert.assertEquals(Integer.valueOf(3), queue.poll());
+        Assert.assertNull(queue.poll());
+    }
+
+}
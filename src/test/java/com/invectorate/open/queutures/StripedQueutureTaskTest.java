@@ -0,0 +1,70 @@
+package com.invectorate.open.queutures;
+
+import java.util.BitSet;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import com.google.common.base.Throwables;
+
+@RunWith(JUnit4.class)
+public class StripedQueutureTaskTest {
+
+    @Test
+    public void resultsFromManyProducerThreadsAreAllDelivered() throws InterruptedException, ExecutionException {
+        final int workers = 4;
+        final int perWorker = 5000;
+        final ExecutorService pool = Executors.newFixedThreadPool(workers);
+        ExecutorService runner = Executors.newSingleThreadExecutor();
+        try {
+            StripedQueutureTask<Integer> queuture = new StripedQueutureTask<Integer>(new Informable<QueutureBox<Integer>>() {
+
+                @Override
+                public void inform(final QueutureBox<Integer> box) {
+                    try {
+                        for (int w = 0; w < workers; w++) {
+                            final int base = w * perWorker;
+                            pool.execute(new Runnable() {
+
+                                @Override
+                                public void run() {
+                                    try {
+                                        for (int i = 0; i < perWorker; i++)
+                                            box.put(base + i);
+                                    } catch (InterruptedException ie) {
+                                        Throwables.propagate(ie);
+                                    }
+                                }
+
+                            });
+                        }
+                        pool.shutdown();
+                        pool.awaitTermination(10, TimeUnit.SECONDS);
+                    } catch (InterruptedException ie) {
+                        Throwables.propagate(ie);
+                    }
+                }
+
+            });
+            runner.execute(queuture);
+
+            BitSet seen = new BitSet();
+            Integer v;
+            while ((v = queuture.next()) != null) {
+                Assert.assertFalse(seen.get(v));
+                seen.set(v);
+            }
+            Assert.assertEquals(workers * perWorker, seen.cardinality());
+        } finally {
+            pool.shutdownNow();
+            runner.shutdownNow();
+        }
+    }
+
+}